@@ -2,6 +2,7 @@ package com.example.chatbot.config;
 
 import com.example.chatbot.security.JwtAuthenticationFilter;
 import com.example.chatbot.security.JwtTokenProvider;
+import com.example.chatbot.security.UserRoleCache;
 import com.example.chatbot.service.TokenBlacklistService;
 import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,16 +35,19 @@ public class SecurityConfig {
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
     private final TokenBlacklistService tokenBlacklistService;
+    private final UserRoleCache userRoleCache;
 
     @Value("${cors.allowed-origins}")
     private String allowedOrigins;
 
     public SecurityConfig(JwtTokenProvider jwtTokenProvider,
                          UserDetailsService userDetailsService,
-                         TokenBlacklistService tokenBlacklistService) {
+                         TokenBlacklistService tokenBlacklistService,
+                         UserRoleCache userRoleCache) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.userDetailsService = userDetailsService;
         this.tokenBlacklistService = tokenBlacklistService;
+        this.userRoleCache = userRoleCache;
     }
 
     @Bean
@@ -96,7 +100,9 @@ public class SecurityConfig {
             "Accept",
             "Origin",
             "Access-Control-Allow-Origin",
-            "Access-Control-Allow-Credentials"
+            "Access-Control-Allow-Credentials",
+            "X-Chat-Model",
+            "Retry-After"
         ));
         
         // 允许发送认证信息（cookies等）
@@ -112,7 +118,7 @@ public class SecurityConfig {
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, tokenBlacklistService);
+        return new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, tokenBlacklistService, userRoleCache);
     }
 
     @Bean
@@ -20,8 +20,13 @@ public class ThreadPoolConfig {
     
     @Bean
     public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         ThreadPoolProperties.PoolConfig config = threadPoolProperties.getAsync();
+        if (VirtualThreadConfig.isActive(threadPoolProperties)) {
+            // 虚拟线程同样需要传递SecurityContext
+            return new DelegatingSecurityContextAsyncTaskExecutor(
+                    VirtualThreadConfig.virtualThreadExecutor(config.getThreadNamePrefix()));
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(config.getCoreSize());
         executor.setMaxPoolSize(config.getMaxSize());
         executor.setQueueCapacity(config.getQueueCapacity());
@@ -35,4 +40,24 @@ public class ThreadPoolConfig {
     public Scheduler elasticScheduler() {
         return Schedulers.fromExecutor(taskExecutor());
     }
+
+    /**
+     * 多层检索专用线程池，与通用异步线程池隔离，
+     * 避免在elastic线程上等待检索结果时与检索任务争抢同一个线程池
+     */
+    @Bean
+    public Scheduler retrievalScheduler() {
+        ThreadPoolProperties.PoolConfig config = threadPoolProperties.getRetrieval();
+        if (VirtualThreadConfig.isActive(threadPoolProperties)) {
+            return Schedulers.fromExecutor(VirtualThreadConfig.virtualThreadExecutor(config.getThreadNamePrefix()));
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getCoreSize());
+        executor.setMaxPoolSize(config.getMaxSize());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix(config.getThreadNamePrefix());
+        executor.setKeepAliveSeconds(config.getKeepAliveSeconds());
+        executor.initialize();
+        return Schedulers.fromExecutor(executor);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.example.chatbot.config;
+
+import com.example.chatbot.properties.ThreadPoolProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * 虚拟线程模式
+ * 通过thread-pool.virtual-threads开启，JDK 21及以上时Tomcat请求处理、MVC异步执行器、
+ * 通用异步线程池和检索线程池都改用虚拟线程，并发度由数据库连接池、Redis连接池等下游资源限制。
+ * JDK版本不满足时记录警告并继续使用平台线程池。
+ * 开启后通过JFR监听jdk.VirtualThreadPinned事件，记录虚拟线程被固定在载体线程上的位置。
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class VirtualThreadConfig {
+    private static final int MIN_JAVA_VERSION = 21;
+    private static final Duration PINNED_THRESHOLD = Duration.ofMillis(20);
+    private static volatile boolean warned;
+
+    private final ThreadPoolProperties threadPoolProperties;
+    private RecordingStream pinnedEvents;
+
+    /**
+     * @return 是否已开启虚拟线程模式且当前JDK支持
+     */
+    public static boolean isActive(ThreadPoolProperties properties) {
+        if (!properties.isVirtualThreads()) {
+            return false;
+        }
+        if (Runtime.version().feature() < MIN_JAVA_VERSION) {
+            if (!warned) {
+                warned = true;
+                log.warn("thread-pool.virtual-threads is enabled but JDK {} does not support virtual threads, using platform thread pools",
+                        Runtime.version().feature());
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 创建虚拟线程执行器，每个任务一个虚拟线程
+     */
+    public static AsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        return factory -> {
+            if (isActive(threadPoolProperties)) {
+                factory.addProtocolHandlerCustomizers(handler -> handler.setExecutor(new VirtualThreadExecutor("tomcat-vt-")));
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startPinningDiagnostics() {
+        if (!isActive(threadPoolProperties)) {
+            return;
+        }
+        try {
+            pinnedEvents = new RecordingStream();
+            pinnedEvents.enable("jdk.VirtualThreadPinned").withThreshold(PINNED_THRESHOLD).withStackTrace();
+            pinnedEvents.onEvent("jdk.VirtualThreadPinned", this::logPinnedEvent);
+            pinnedEvents.startAsync();
+            log.info("Virtual threads enabled, reporting pinned carrier threads longer than {} ms", PINNED_THRESHOLD.toMillis());
+        } catch (Exception e) {
+            log.warn("Failed to start virtual thread pinning diagnostics", e);
+        }
+    }
+
+    private void logPinnedEvent(RecordedEvent event) {
+        String frames = event.getStackTrace() == null ? "" : event.getStackTrace().getFrames().stream()
+                .limit(8)
+                .map(this::formatFrame)
+                .collect(Collectors.joining("\n\tat ", "\n\tat ", ""));
+        log.warn("Virtual thread pinned for {} ms on {}{}", event.getDuration().toMillis(),
+                event.getThread() == null ? "unknown" : event.getThread().getJavaName(), frames);
+    }
+
+    private String formatFrame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    @PreDestroy
+    public void stopPinningDiagnostics() {
+        if (pinnedEvents != null) {
+            pinnedEvents.close();
+        }
+    }
+}
@@ -2,66 +2,96 @@ package com.example.chatbot.controller;
 
 import com.example.chatbot.dto.ChatRequest;
 import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.dto.ModelRoute;
+import com.example.chatbot.properties.SseProperties;
 import com.example.chatbot.service.ChatService;
+import com.example.chatbot.service.ModelRouter;
+import com.example.chatbot.util.ChatFrameEncoder;
+import com.example.chatbot.util.ChatTrace;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
 @RequestMapping("/ai/chat")
 @RequiredArgsConstructor
 public class ChatController {
+    // 响应头中标明实际使用的模型，路由降级时可能与请求的模型不同
+    private static final String MODEL_HEADER = "X-Chat-Model";
+    private static final String SERVER_TIMING_HEADER = "Server-Timing";
+    private static final ServerSentEvent<String> HEARTBEAT = ServerSentEvent.<String>builder().comment("ping").build();
+
     private final ChatService chatService;
+    private final ModelRouter modelRouter;
+    private final SseProperties sseProperties;
+    private final MeterRegistry meterRegistry;
     private final ObjectMapper objectMapper;
+    private ObjectWriter responseWriter;
+
+    // 复用ObjectWriter，避免每个分片重新查找序列化器
+    @PostConstruct
+    public void init() {
+        responseWriter = objectMapper.writerFor(ChatResponse.class);
+    }
 
     @PostMapping("/send")
     public ResponseEntity<ChatResponse> chat(@RequestBody ChatRequest request) {
-        if (request.getModelId() == null) {
-            request.setModelId("qwen3");
-        }
-        ChatResponse response = chatService.processMessage(request);
-        return ResponseEntity.ok(response);
+        ChatTrace trace = new ChatTrace(meterRegistry);
+        ModelRoute route = trace.time("route", () -> modelRouter.route(request.getModelId()));
+        ChatResponse response = chatService.processMessage(request, route, trace);
+        return ResponseEntity.ok()
+                .header(MODEL_HEADER, route.modelId())
+                .header(SERVER_TIMING_HEADER, trace.serverTiming())
+                .body(response);
     }
 
     @PostMapping(value = "/send/reactive", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chatReactive(@RequestBody ChatRequest request) {
-        if (request.getModelId() == null) {
-            request.setModelId("qwen3");
-        }
-        
-        // 用于跟踪是否已经过了think块
-        final boolean[] passedThinkBlock = {false};
-        
-        return chatService.processMessageReactive(request)
-                .mapNotNull(response -> {
+    public Flux<ServerSentEvent<String>> chatReactive(@RequestBody ChatRequest request, HttpServletResponse servletResponse) {
+        // 流式响应的状态和响应头在第一个事件之前发送，路由需要在返回Flux之前完成
+        // 流式响应的阶段耗时在响应头发送之后才能确定，只输出到调试日志和指标
+        ChatTrace trace = new ChatTrace(meterRegistry);
+        ModelRoute route = trace.time("route", () -> modelRouter.route(request.getModelId()));
+        servletResponse.setHeader(MODEL_HEADER, route.modelId());
+
+        // think块过滤和分片合并已在服务层完成，这里只负责序列化；同一个流的固定字段只序列化一次
+        ChatFrameEncoder frameEncoder = new ChatFrameEncoder(responseWriter);
+        Flux<ServerSentEvent<String>> events = chatService.processMessageReactive(request, route, trace)
+                .map(response -> {
                     try {
-                        String message = response.getMessage();
-                        
-                        // 如果遇到</think>，标记可以开始发送内容
-                        if (!passedThinkBlock[0] && message.contains("</think>")) {
-                            passedThinkBlock[0] = true;
-                            return null;
-                        }
-                        
-                        // 只有在过了think块后才发送内容
-                        if (passedThinkBlock[0]) {
-                            // 移除开头的换行符
-                            message = message.replaceAll("^\\n+", "");
-                            response.setMessage(message);
-                            return objectMapper.writeValueAsString(response);
-                        }
-                        
-                        return null;
+                        return ServerSentEvent.builder(frameEncoder.encode(response)).build();
                     } catch (Exception e) {
-                        return "data: {\"error\": \"" + e.getMessage() + "\"}\n\n";
+                        return ServerSentEvent.builder("{\"error\": \"" + e.getMessage() + "\"}").build();
                     }
-                })
-                .filter(str -> str != null && !str.trim().isEmpty()); // 过滤掉空消息和think块内容
+                });
+        return withHeartbeat(events);
+    }
+
+    /**
+     * 检索、排队和思考阶段可能长时间没有输出，客户端断开只有在写入时才会被发现。
+     * 定期发送注释行让断开尽快暴露，Spring随即取消订阅并停止上游生成。
+     */
+    private Flux<ServerSentEvent<String>> withHeartbeat(Flux<ServerSentEvent<String>> events) {
+        long intervalMs = sseProperties.getHeartbeatIntervalMs();
+        if (intervalMs <= 0) {
+            return events;
+        }
+        Duration interval = Duration.ofMillis(intervalMs);
+        return events.publish(shared -> Flux.merge(shared,
+                Flux.interval(interval, interval)
+                        .map(tick -> HEARTBEAT)
+                        .takeUntilOther(shared.then(Mono.just(Boolean.TRUE)))));
     }
 
     @GetMapping("/models")
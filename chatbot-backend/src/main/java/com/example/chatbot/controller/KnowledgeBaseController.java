@@ -67,6 +67,16 @@ public class KnowledgeBaseController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/batch-delete")
+    @PreAuthorize("hasAnyRole('ROLE_KNOWLEDGEMANAGER','ROLE_ADMIN')")
+    public ResponseEntity<Integer> batchDelete(@RequestBody List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > 1000) {
+            log.warn("Batch delete request must contain 1 to 1000 ids. Received: {}", ids.size());
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(knowledgeService.deleteKnowledgeBatch(ids));
+    }
+
     @PostMapping("/batch-import")
     @PreAuthorize("hasAnyRole('ROLE_KNOWLEDGEMANAGER','ROLE_ADMIN')")
     public ResponseEntity<Void> batchImport(@RequestBody List<KnowledgeBase> knowledgeList) {
@@ -0,0 +1,15 @@
+package com.example.chatbot.dto;
+
+/**
+ * 按token预算组装的知识库上下文
+ * @param text 拼接到用户消息后的上下文文本，没有可用文档时为空字符串
+ * @param tokens 上下文的估算token数
+ * @param originalTokens 直接拼接全部文档时的估算token数
+ * @param passages 选入上下文的段落数
+ */
+public record AssembledContext(String text, int tokens, int originalTokens, int passages) {
+
+    public int savedTokens() {
+        return Math.max(0, originalTokens - tokens);
+    }
+}
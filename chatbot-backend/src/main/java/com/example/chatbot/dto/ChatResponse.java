@@ -11,4 +11,5 @@ public class ChatResponse {
     private String role;
     private String modelId;
     private String sequence;
+    private Boolean truncated;
 } 
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.chatbot.dto;
+
+/**
+ * 模型路由结果
+ * @param modelId 实际使用的模型ID
+ * @param requestedModelId 客户端请求的模型ID
+ * @param maxTokens 降级后的最大生成长度，为null时使用模型配置
+ * @param skipReasoning 是否关闭模型的思考过程
+ * @param reason 路由原因，未降级时为"requested"
+ */
+public record ModelRoute(
+    String modelId,
+    String requestedModelId,
+    Integer maxTokens,
+    boolean skipReasoning,
+    String reason
+) {
+    public static ModelRoute direct(String modelId) {
+        return new ModelRoute(modelId, modelId, null, false, "requested");
+    }
+
+    public boolean degraded() {
+        return !modelId.equals(requestedModelId) || maxTokens != null || skipReasoning;
+    }
+}
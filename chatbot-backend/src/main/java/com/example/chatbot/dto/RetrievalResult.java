@@ -0,0 +1,34 @@
+package com.example.chatbot.dto;
+
+import com.example.chatbot.entity.KnowledgeBase;
+
+import java.util.List;
+
+/**
+ * 多层检索结果
+ * @param documents 合并去重后的文档
+ * @param tiers 各检索层的执行情况
+ * @param elapsedMillis 检索总耗时（毫秒）
+ * @param queryVector 查询向量，向量化超时或失败时为null
+ */
+public record RetrievalResult(
+    List<KnowledgeBase> documents,
+    List<TierReport> tiers,
+    long elapsedMillis,
+    float[] queryVector
+) {
+    public enum Tier {
+        REDIS,     // Redis关键词索引
+        VECTOR,    // 向量检索（Embedding + Milvus）
+        DATABASE   // 数据库关键词检索
+    }
+
+    public enum TierStatus {
+        COMPLETED,  // 在截止时间内完成
+        TIMED_OUT,  // 超过截止时间被取消
+        FAILED,     // 执行异常
+        CANCELLED   // 前序检索层结果已足够，提前取消
+    }
+
+    public record TierReport(Tier tier, TierStatus status, long elapsedMillis, int resultCount) {}
+}
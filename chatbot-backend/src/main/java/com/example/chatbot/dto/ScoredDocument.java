@@ -0,0 +1,10 @@
+package com.example.chatbot.dto;
+
+import com.example.chatbot.entity.KnowledgeBase;
+
+/**
+ * 带分数的检索结果
+ * @param document 文档
+ * @param score 检索层给出的分数：向量检索为余弦相似度，关键词检索为关键词命中数，融合后为RRF分数
+ */
+public record ScoredDocument(KnowledgeBase document, double score) {}
@@ -25,6 +25,9 @@ public class ChatMessage {
     @TableField("user_id")
     private Long userId;
 
+    @TableField("truncated")
+    private boolean truncated; // 客户端断开导致回答未生成完整
+
     @TableField(exist = false)
     private User user;
 } 
\ No newline at end of file
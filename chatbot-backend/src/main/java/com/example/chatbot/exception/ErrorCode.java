@@ -19,7 +19,8 @@ public enum ErrorCode {
     INVALID_PARAMETER(HttpStatus.BAD_REQUEST, "VALID_001", "输入参数有误"),
     
     // 系统错误 (5000-5999)
-    INTERNAL_SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "SYS_001", "服务器内部错误");
+    INTERNAL_SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "SYS_001", "服务器内部错误"),
+    MODEL_OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE, "SYS_002", "模型当前请求过多，请稍后重试");
 
     private final HttpStatus httpStatus;
     private final String code;
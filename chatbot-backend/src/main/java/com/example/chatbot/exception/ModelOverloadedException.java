@@ -0,0 +1,16 @@
+package com.example.chatbot.exception;
+
+import lombok.Getter;
+
+/**
+ * 模型排队已满或等待超时，响应503并通过Retry-After提示客户端稍后重试
+ */
+@Getter
+public class ModelOverloadedException extends BusinessException {
+    private final long retryAfterSeconds;
+
+    public ModelOverloadedException(String modelId, long retryAfterSeconds) {
+        super(ErrorCode.MODEL_OVERLOADED, "模型 " + modelId + " 当前请求过多，请稍后重试");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -5,6 +5,8 @@ import com.example.chatbot.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
 import java.util.List;
 
 @Mapper
@@ -12,12 +14,20 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
     @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} ORDER BY created_at ASC")
     List<ChatMessage> findBySessionIdAndUserIdOrderByCreatedAtAsc(String sessionId, Long userId);
     
-    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} ORDER BY created_at DESC LIMIT 20")
-    List<ChatMessage> findLast10BySessionIdAndUserIdOrderByCreatedAtDesc(String sessionId, Long userId);
+    @Select("SELECT * FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId} ORDER BY created_at DESC LIMIT #{limit}")
+    List<ChatMessage> findRecentBySessionIdAndUserId(String sessionId, Long userId, int limit);
 
     @Select("SELECT * FROM (SELECT DISTINCT ON (session_id) session_id, created_at FROM chat_messages WHERE user_id = #{userId} ORDER BY session_id, created_at DESC) t ORDER BY created_at DESC")
     List<String> findDistinctSessionIdByUserId(Long userId);
 
+    @Insert("<script>" +
+            "INSERT INTO chat_messages (content, role, session_id, user_id, created_at, truncated) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.content}, #{m.role}, #{m.sessionId}, #{m.userId}, #{m.createdAt}, #{m.truncated})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
+
     @Delete("DELETE FROM chat_messages WHERE session_id = #{sessionId} AND user_id = #{userId}")
     void deleteBySessionIdAndUserId(String sessionId, Long userId);
 } 
\ No newline at end of file
@@ -18,4 +18,7 @@ public interface UserMapper extends BaseMapper<User> {
 
     @Select("SELECT COUNT(*) FROM users WHERE email = #{email}")
     int existsByEmail(String email);
+
+    @Select("SELECT COUNT(*) FROM users WHERE id = #{id}")
+    int existsById(Long id);
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.answer-cache")
+public class AnswerCacheProperties {
+    private boolean enabled = true;  // 是否启用语义答案缓存
+    private double maxDistance = 0.05;  // 命中所需的最大余弦距离（1 - 余弦相似度），越小要求越严格
+    private long ttlSeconds = 1800;  // 缓存条目存活时间（秒）
+    private int maxEntries = 1000;  // 最大缓存条目数，超过后按LRU淘汰
+    private int replayChunkSize = 16;  // 命中后以SSE回放时每个分片的字符数
+}
@@ -0,0 +1,33 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "embedding")
+public class EmbeddingProperties {
+    private String model = "default";  // 嵌入模型名称，作为向量缓存键的一部分，切换模型后旧缓存自然失效
+    private String url;  // 单条文本向量化接口
+    private String batchUrl;  // 批量文本向量化接口
+    private int vectorDim = 384;  // 向量维度，需要和嵌入模型一致
+    private long connectTimeoutMs = 1000;  // 建立连接的超时时间（毫秒）
+    private long readTimeoutMs = 5000;  // 单条及在线查询请求等待响应的超时时间（毫秒）
+    private long batchReadTimeoutMs = 60000;  // 批量导入请求等待响应的超时时间（毫秒）
+    private int batchSize = 32;  // 批量导入时每次请求包含的文本数
+    private int batchParallelism = 4;  // 同时在途的批量请求数
+    private int maxRetries = 2;  // 失败文本的最大重试轮数，每轮只重新提交上一轮失败的文本
+    private boolean queryBatchEnabled = true;  // 是否合并并发的在线查询向量化请求
+    private long queryBatchWindowMs = 5;  // 合并窗口（毫秒），第一个请求到达后最多等待的时间
+    private int queryMaxBatchSize = 16;  // 单次合并的最大请求数，攒满后立即发出
+    private Cache cache = new Cache();
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;  // 是否缓存文本向量
+        private int localMaxEntries = 10000;  // 本地LRU缓存的最大条目数
+        private boolean redisEnabled = true;  // 是否使用Redis作为二级缓存
+        private long redisTtlSeconds = 604800;  // Redis中向量的过期时间（秒）
+    }
+}
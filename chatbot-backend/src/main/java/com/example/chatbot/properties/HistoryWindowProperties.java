@@ -0,0 +1,13 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.history-window")
+public class HistoryWindowProperties {
+    private int size = 20;  // 每个会话在Redis中保留的最近消息条数
+    private long ttlSeconds = 3600;  // 会话窗口的过期时间（秒），每次追加消息时刷新
+}
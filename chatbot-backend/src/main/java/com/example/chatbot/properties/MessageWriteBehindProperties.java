@@ -0,0 +1,16 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.message-write-behind")
+public class MessageWriteBehindProperties {
+    private int queueCapacity = 10000;  // 内存队列容量，已满时新消息直接溢出到本地文件
+    private int batchSize = 200;  // 单条INSERT语句最多写入的消息数，队列积压达到该值时立即刷盘
+    private long flushIntervalMs = 200;  // 定时刷盘间隔（毫秒）
+    private boolean spoolEnabled = true;  // 数据库写入失败或队列已满时是否溢出到本地追加文件
+    private String spoolPath = "data/chat-message-spool.jsonl";  // 溢出文件路径，每行一条JSON消息
+}
@@ -23,5 +23,9 @@ public class ModelProperties {
         private Double presencePenalty;  // 存在惩罚，控制模型避免重复内容的程度。范围[-2,2]，默认0.0
         private Double frequencyPenalty;  // 频率惩罚，控制模型避免重复使用相同词的程度。范围[-2,2]，默认0.0
         private List<String> stop;  // 停止序列，当生成文本包含这些序列时停止生成
+        private Integer contextTokenBudget = 1024;  // 提示词中知识库上下文的token预算，超出时按段落相关度裁剪
+        private int maxConcurrency = 2;  // 同时进行的最大生成数，超出的请求按用户轮转排队
+        private int maxQueueSize = 50;  // 最大排队请求数，队列已满时直接返回503
+        private long maxQueueWaitMs = 30000;  // 最长排队时间（毫秒），超时返回503
     }
 } 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.model-routing")
+public class ModelRoutingProperties {
+    private boolean enabled = true;  // 是否根据延迟SLO路由和降级
+    private long ttftSloMs = 8000;  // 首字延迟SLO（毫秒），预计超出时切换模型或降级
+    private double ewmaAlpha = 0.3;  // 指数移动平均的平滑系数，越大越偏向最近的请求
+    private long ttftDecayHalfLifeMs = 30000;  // 没有新样本时首字延迟估计按此半衰期衰减（毫秒），0表示不衰减
+    private Map<String, List<String>> fallbacks = Map.of();  // 模型ID -> 按优先级排列的备选模型
+    private int degradedMaxTokens = 512;  // 所有模型都无法满足SLO时使用的最大生成长度
+    private List<String> noThinkModels = List.of();  // 支持通过/no_think关闭思考过程的模型
+}
@@ -0,0 +1,18 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.retrieval")
+public class RetrievalProperties {
+    private long deadlineMs = 1500;  // 单次检索的总截止时间（毫秒），所有检索层共享同一截止时间
+    private int minRequiredResults = 3;  // 最少需要的文档数量，Redis命中数达到该值时取消数据库检索层，向量检索层不受影响
+    private int topK = 5;  // 融合后进入提示词的最大文档数
+    private int rrfK = 60;  // 倒数排名融合的平滑常数
+    private double redisWeight = 1.0;  // Redis关键词索引结果的融合权重
+    private double vectorWeight = 1.0;  // 向量检索结果的融合权重
+    private double databaseWeight = 1.0;  // 数据库关键词检索结果的融合权重
+}
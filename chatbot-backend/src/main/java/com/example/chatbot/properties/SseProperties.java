@@ -0,0 +1,13 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.sse")
+public class SseProperties {
+    // 心跳间隔（毫秒），流式响应长时间没有输出时发送SSE注释行，写入失败即可发现客户端已断开；0表示不发送
+    private long heartbeatIntervalMs = 10000;
+}
@@ -0,0 +1,14 @@
+package com.example.chatbot.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chatbot.stream-coalescing")
+public class StreamCoalescingProperties {
+    private boolean enabled = true;  // 是否合并流式输出的分片
+    private long windowMs = 30;  // 合并时间窗口（毫秒），窗口内到达的分片合并为一个SSE事件
+    private int maxBytes = 256;  // 单个SSE事件累积的最大UTF-8字节数，达到后立即发送
+}
@@ -8,8 +8,10 @@ import org.springframework.stereotype.Component;
 @Component
 @ConfigurationProperties(prefix = "thread-pool")
 public class ThreadPoolProperties {
+    private boolean virtualThreads = false;  // 是否使用虚拟线程（需要JDK 21+），开启后Tomcat、async、mvc、retrieval均改用虚拟线程
     private PoolConfig async;
     private PoolConfig mvc;
+    private PoolConfig retrieval;
 
     @Data
     public static class PoolConfig {
@@ -0,0 +1,29 @@
+package com.example.chatbot.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 携带用户ID和角色的认证主体
+ * 登录时由UserDetailsServiceImpl创建，之后的请求直接由JWT中的声明还原，
+ * 业务层从SecurityContext中读取用户ID，不再按用户名查询数据库。
+ */
+@Getter
+public class ChatbotUserPrincipal implements UserDetails {
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    public ChatbotUserPrincipal(Long id, String username, String password,
+                                Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.authorities = authorities == null ? List.of() : List.copyOf(authorities);
+    }
+}
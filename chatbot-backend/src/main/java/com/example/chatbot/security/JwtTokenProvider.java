@@ -14,6 +14,7 @@ import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
+    public static final String USER_ID_CLAIM = "uid";
 
     @Value("${jwt.secret}")
     private String jwtSecret;
@@ -35,9 +36,15 @@ public class JwtTokenProvider {
         Date currentDate = new Date();
         Date expireDate = new Date(currentDate.getTime() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(username)
-                .claim("roles", roles)
+                .claim("roles", roles);
+        // 写入用户ID，后续请求直接从令牌还原认证主体，无需查询数据库
+        if (authentication.getPrincipal() instanceof ChatbotUserPrincipal principal) {
+            builder.claim(USER_ID_CLAIM, principal.getId());
+        }
+
+        return builder
                 .setIssuedAt(new Date())
                 .setExpiration(expireDate)
                 .signWith(getSigningKey())
@@ -53,6 +60,22 @@ public class JwtTokenProvider {
                 .getSubject();
     }
 
+    /**
+     * 校验并解析令牌，只做一次签名验证
+     * @return 令牌声明，令牌无效时返回null
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public boolean validateToken(String token) {
         try {
             Jwts.parserBuilder()
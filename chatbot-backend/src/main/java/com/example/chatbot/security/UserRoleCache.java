@@ -0,0 +1,57 @@
+package com.example.chatbot.security;
+
+import com.example.chatbot.mapper.UserMapper;
+import com.example.chatbot.mapper.UserRoleMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户状态和角色短期缓存
+ * JWT中的用户ID在令牌有效期内不会变化，但管理员可能随时修改角色或删除用户，
+ * 因此用户是否存在和角色一起按用户ID缓存较短时间，过期后重新加载；本实例修改角色或删除用户时立即失效。
+ * 用户表没有启用/禁用字段，删除用户即视为停用。
+ */
+@Component
+@RequiredArgsConstructor
+public class UserRoleCache {
+    private final UserMapper userMapper;
+    private final UserRoleMapper userRoleMapper;
+    private final ConcurrentHashMap<Long, CachedRoles> cache = new ConcurrentHashMap<>();
+
+    @Value("${jwt.role-cache-seconds:60}")
+    private long roleCacheSeconds;
+
+    /**
+     * @param userId 用户ID
+     * @return 用户的角色，用户不存在时返回空
+     */
+    public Optional<List<GrantedAuthority>> getAuthorities(Long userId) {
+        long now = System.currentTimeMillis();
+        CachedRoles cached = cache.get(userId);
+        if (cached == null || cached.expiresAt() <= now) {
+            List<GrantedAuthority> authorities = null;
+            if (userMapper.existsById(userId) > 0) {
+                authorities = userRoleMapper.findRolesByUserId(userId).stream()
+                        .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                        .toList();
+            }
+            cached = new CachedRoles(authorities, now + roleCacheSeconds * 1000);
+            cache.put(userId, cached);
+        }
+        return Optional.ofNullable(cached.authorities());
+    }
+
+    public void evict(Long userId) {
+        cache.remove(userId);
+    }
+
+    // authorities为null表示用户不存在
+    private record CachedRoles(List<GrantedAuthority> authorities, long expiresAt) {}
+}
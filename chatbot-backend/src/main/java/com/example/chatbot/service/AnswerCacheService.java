@@ -0,0 +1,33 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.KnowledgeBase;
+
+import java.util.List;
+
+public interface AnswerCacheService {
+    /**
+     * 查找语义相近且引用了相同文档（含版本）的已缓存回答
+     * @param modelId 模型ID
+     * @param scope 缓存作用域，由系统提示和会话历史决定，只有作用域相同的条目才会命中；为null时不使用缓存
+     * @param queryVector 查询向量
+     * @param documents 本次检索到的文档
+     * @return 缓存的回答，未命中时返回null
+     */
+    String lookup(String modelId, String scope, float[] queryVector, List<KnowledgeBase> documents);
+
+    /**
+     * 缓存一次完整的回答
+     * @param modelId 模型ID
+     * @param scope 缓存作用域，与lookup使用的作用域一致
+     * @param queryVector 查询向量
+     * @param documents 生成回答时使用的文档
+     * @param answer 清理后的回答
+     */
+    void put(String modelId, String scope, float[] queryVector, List<KnowledgeBase> documents, String answer);
+
+    /**
+     * 使引用了指定文档的缓存条目失效
+     * @param knowledgeId 知识库文档ID
+     */
+    void invalidateDocument(Long knowledgeId);
+}
@@ -0,0 +1,28 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.ChatMessage;
+
+import java.util.List;
+
+public interface ChatHistoryWindowService {
+    /**
+     * 获取会话最近的消息（按时间正序），Redis中不存在时从数据库重建
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @return 最近的消息列表
+     */
+    List<ChatMessage> getRecentMessages(String sessionId, Long userId);
+
+    /**
+     * 将新消息追加到会话窗口并裁剪到固定长度，窗口尚未建立时暂存，在下一次重建时合并
+     * @param message 已保存的消息
+     */
+    void append(ChatMessage message);
+
+    /**
+     * 删除会话窗口
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     */
+    void evict(String sessionId, Long userId);
+}
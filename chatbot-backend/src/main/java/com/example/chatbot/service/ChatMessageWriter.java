@@ -0,0 +1,35 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.entity.ChatMessage;
+
+import java.util.List;
+
+public interface ChatMessageWriter {
+    /**
+     * 提交一条待持久化的消息，由后台线程按批写入数据库，不等待刷盘
+     * 不保证落库顺序，读取时按createdAt排序
+     * @param message 聊天消息，createdAt为空时以提交时间为准
+     */
+    void write(ChatMessage message);
+
+    /**
+     * 同步写入所有已提交的消息，用于停机前
+     */
+    void flush();
+
+    /**
+     * 获取已提交但尚未写入数据库的消息，包括队列和溢出文件中的消息
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @return 按createdAt正序排列的消息
+     */
+    List<ChatMessage> pendingMessages(String sessionId, Long userId);
+
+    /**
+     * 丢弃会话中尚未写入数据库的消息，删除会话时调用，避免删除后又被写入
+     * 返回时正在执行的批量写入已经结束
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     */
+    void discardSession(String sessionId, Long userId);
+}
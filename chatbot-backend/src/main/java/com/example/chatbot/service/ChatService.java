@@ -2,13 +2,15 @@ package com.example.chatbot.service;
 
 import com.example.chatbot.dto.ChatRequest;
 import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.dto.ModelRoute;
+import com.example.chatbot.util.ChatTrace;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
 
 public interface ChatService {
-    ChatResponse processMessage(ChatRequest request);
-    Flux<ChatResponse> processMessageReactive(ChatRequest request);
+    ChatResponse processMessage(ChatRequest request, ModelRoute route, ChatTrace trace);
+    Flux<ChatResponse> processMessageReactive(ChatRequest request, ModelRoute route, ChatTrace trace);
     List<ChatResponse> getHistory(String sessionId);
     List<String> getAllSessions();
     void deleteSession(String sessionId);
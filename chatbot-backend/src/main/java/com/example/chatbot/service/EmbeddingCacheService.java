@@ -0,0 +1,33 @@
+package com.example.chatbot.service;
+
+import java.util.List;
+
+public interface EmbeddingCacheService {
+    /**
+     * 查找文本的缓存向量
+     * @param text 原始文本，内部按规范化后的内容计算缓存键
+     * @return 缓存的向量，未命中时返回null
+     */
+    float[] get(String text);
+
+    /**
+     * 批量查找文本的缓存向量，Redis中只发起一次MGET
+     * @param texts 原始文本列表
+     * @return 与输入顺序一致的向量列表，未命中的位置为null
+     */
+    List<float[]> getAll(List<String> texts);
+
+    /**
+     * 缓存文本向量
+     * @param text 原始文本
+     * @param vector 文本向量
+     */
+    void put(String text, float[] vector);
+
+    /**
+     * 批量缓存文本向量，Redis写入通过pipeline一次发送
+     * @param texts 原始文本列表
+     * @param vectors 与文本一一对应的向量，为null的位置跳过
+     */
+    void putAll(List<String> texts, List<float[]> vectors);
+}
@@ -0,0 +1,19 @@
+package com.example.chatbot.service;
+
+import java.util.List;
+
+public interface EmbeddingService {
+    /**
+     * 生成单条文本的向量
+     * @param text 文本
+     * @return 文本向量，可能与缓存共享，调用方不能修改
+     */
+    float[] embed(String text);
+
+    /**
+     * 按批量接口分批生成多条文本的向量，批次之间并行执行，失败的文本按轮次重试
+     * @param texts 文本列表
+     * @return 与输入顺序一致的向量列表，重试后仍失败的位置为null
+     */
+    List<float[]> embedAll(List<String> texts);
+}
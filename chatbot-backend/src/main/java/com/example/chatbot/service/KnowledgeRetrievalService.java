@@ -0,0 +1,21 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.dto.RetrievalResult;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface KnowledgeRetrievalService {
+    /**
+     * 并发执行Redis、向量、数据库三层检索，在统一的截止时间内合并已返回的结果
+     * @param query 清理后的用户消息
+     * @param keywords 提取出的关键词
+     * @return 合并后的文档及各检索层的耗时与状态
+     */
+    RetrievalResult retrieve(String query, List<String> keywords);
+
+    /**
+     * retrieve的非阻塞版本，订阅时才开始检索，取消订阅会取消尚未完成的检索层
+     */
+    Mono<RetrievalResult> retrieveAsync(String query, List<String> keywords);
+}
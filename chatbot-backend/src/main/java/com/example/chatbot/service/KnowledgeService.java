@@ -14,7 +14,21 @@ public interface KnowledgeService {
     KnowledgeBase addKnowledge(KnowledgeBase knowledge);
     KnowledgeBase updateKnowledge(Long id, KnowledgeBase knowledge);
     void deleteKnowledge(Long id);
+
+    /**
+     * 批量删除知识，向量索引按批删除，不存在的ID直接跳过
+     * @param ids 知识ID列表
+     * @return 实际删除的条数
+     */
+    int deleteKnowledgeBatch(List<Long> ids);
     void batchImport(List<KnowledgeBase> knowledgeList);
+
+    /**
+     * 保存一批知识并整批生成向量索引，单条失败不影响其他数据
+     * @param knowledgeList 知识库文档列表
+     * @return 成功导入的条数
+     */
+    int importKnowledge(List<KnowledgeBase> knowledgeList);
     
     /**
      * 获取所有知识库数据（不分页）
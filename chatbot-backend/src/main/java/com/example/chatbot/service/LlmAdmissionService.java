@@ -0,0 +1,38 @@
+package com.example.chatbot.service;
+
+import reactor.core.publisher.Flux;
+
+import java.util.function.Supplier;
+
+/**
+ * 模型调用准入控制
+ * 每个模型限制同时进行的生成数，超出的请求按用户轮转排队，避免单个用户占满队列
+ */
+public interface LlmAdmissionService {
+    /**
+     * 快速检查模型队列是否已满，已满时抛出ModelOverloadedException
+     * 流式接口在响应头发送之前调用，保证能返回503
+     * @param modelId 模型ID
+     */
+    void checkCapacity(String modelId);
+
+    /**
+     * @param modelId 模型ID
+     * @return 正在执行和排队等待的请求总数
+     */
+    int pendingCount(String modelId);
+
+    /**
+     * 获得执行许可后订阅生成流，流结束、出错或取消时释放许可
+     * @param modelId 模型ID
+     * @param userId 用户ID，用于公平排队
+     * @param generation 模型生成流
+     * @return 排队超时或队列已满时以ModelOverloadedException结束
+     */
+    <T> Flux<T> admit(String modelId, Long userId, Supplier<Flux<T>> generation);
+
+    /**
+     * 阻塞版本，获得执行许可后执行调用
+     */
+    <T> T admitBlocking(String modelId, Long userId, Supplier<T> generation);
+}
@@ -0,0 +1,20 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.dto.ModelRoute;
+import reactor.core.publisher.Flux;
+
+public interface ModelRouter {
+    /**
+     * 根据各模型的实时延迟和排队情况选择模型
+     * @param requestedModelId 客户端请求的模型ID，为null时使用默认模型
+     * @return 路由结果
+     */
+    ModelRoute route(String requestedModelId);
+
+    /**
+     * 统计模型输出流的首字延迟、生成速度和总耗时
+     * @param modelId 模型ID
+     * @param tokens 模型原始输出流，每个元素约为一个token
+     */
+    Flux<String> observe(String modelId, Flux<String> tokens);
+}
@@ -16,6 +16,12 @@ public interface RedisService {
      */
     void saveDocToRedis(KnowledgeBase knowledge);
 
+    /**
+     * 批量保存检索到的文档：热知识计数和文档数据在一个Lua脚本中原子写入，
+     * 关键词索引通过pipeline写入，可以重复执行，不需要分布式锁
+     */
+    void saveDocsToRedis(List<KnowledgeBase> documents);
+
     /**
      * 增加知识库文档的访问分数
      */
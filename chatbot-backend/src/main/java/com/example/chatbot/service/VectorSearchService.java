@@ -1,5 +1,6 @@
 package com.example.chatbot.service;
 
+import com.example.chatbot.dto.ScoredDocument;
 import com.example.chatbot.entity.KnowledgeBase;
 import java.util.List;
 
@@ -11,6 +12,29 @@ public interface VectorSearchService {
      * @return 相似文档列表
      */
     List<KnowledgeBase> searchSimilar(String query, int topK);
+
+    /**
+     * 生成查询文本的向量，供相似检索和语义缓存复用
+     * @param query 查询文本
+     * @return 查询向量
+     */
+    float[] embedQuery(String query);
+
+    /**
+     * 使用已经生成的查询向量搜索相似文档
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @return 相似文档列表
+     */
+    List<KnowledgeBase> searchSimilar(float[] queryVector, int topK);
+
+    /**
+     * 使用已经生成的查询向量搜索相似文档，保留相似度分数
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @return 按相似度从高到低排列的文档及其余弦相似度
+     */
+    List<ScoredDocument> searchSimilarScored(float[] queryVector, int topK);
     
     /**
      * 将文档转换为向量并存储
@@ -21,18 +45,31 @@ public interface VectorSearchService {
     /**
      * 批量索引文档
      * @param knowledgeList 知识库文档列表
+     * @return 重试后仍未能向量化、因此没有写入索引的文档ID
      */
-    void indexDocuments(List<KnowledgeBase> knowledgeList);
+    List<Long> indexDocuments(List<KnowledgeBase> knowledgeList);
     
     /**
      * 删除文档索引
      * @param id 文档ID
      */
     void deleteDocument(Long id);
+
+    /**
+     * 批量删除文档索引
+     * @param ids 文档ID列表
+     */
+    void deleteDocuments(List<Long> ids);
     
     /**
      * 更新文档索引
      * @param knowledge 知识库文档
      */
     void updateDocument(KnowledgeBase knowledge);
+
+    /**
+     * 删除和更新累积的墓碑超过阈值时压缩向量集合
+     * @return 是否触发了压缩
+     */
+    boolean compactIfNeeded();
 } 
\ No newline at end of file
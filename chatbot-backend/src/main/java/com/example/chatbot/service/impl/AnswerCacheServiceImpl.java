@@ -0,0 +1,204 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.AnswerCacheProperties;
+import com.example.chatbot.service.AnswerCacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语义答案缓存
+ * 以查询向量的余弦距离判断问题是否相近，并要求检索到的文档ID及版本完全一致，
+ * 保证知识库内容变化后不会返回基于旧内容生成的回答。
+ * 条目按作用域隔离：作用域由调用方根据会话历史生成，上下文相同的问题跨用户共享，上下文不同的问题互不命中。
+ * 模型、作用域和文档版本完全相同的条目放在同一个分组中，查找时只在分组内比较向量，
+ * 且距离计算在锁外进行，锁内只做分组读取和LRU登记。
+ * 条目在本地内存中保存，按TTL过期并按LRU淘汰。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnswerCacheServiceImpl implements AnswerCacheService {
+    private final AnswerCacheProperties properties;
+    private final AtomicLong idGenerator = new AtomicLong();
+    // accessOrder为true时LinkedHashMap按访问顺序排列，最久未访问的条目在最前面
+    private final LinkedHashMap<Long, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 模型、作用域和文档版本 -> 可以互相命中的条目
+    private final Map<GroupKey, List<CacheEntry>> groups = new HashMap<>();
+    // 文档ID -> 引用了该文档的缓存条目ID
+    private final Map<Long, Set<Long>> entriesByDocument = new HashMap<>();
+
+    @Override
+    public String lookup(String modelId, String scope, float[] queryVector, List<KnowledgeBase> documents) {
+        if (!properties.isEnabled() || scope == null || queryVector == null || queryVector.length == 0) {
+            return null;
+        }
+        GroupKey key = new GroupKey(modelId, scope, documentVersions(documents));
+        List<CacheEntry> candidates;
+        synchronized (this) {
+            List<CacheEntry> group = groups.get(key);
+            if (group == null) {
+                return null;
+            }
+            candidates = List.copyOf(group);
+        }
+
+        float[] query = normalize(queryVector);
+        long now = System.currentTimeMillis();
+        CacheEntry best = null;
+        double bestDistance = Double.MAX_VALUE;
+        List<CacheEntry> expired = new ArrayList<>();
+        for (CacheEntry entry : candidates) {
+            if (entry.expiresAt() < now) {
+                expired.add(entry);
+                continue;
+            }
+            if (entry.vector().length != query.length) {
+                continue;
+            }
+            double distance = 1.0 - dot(entry.vector(), query);
+            if (distance <= properties.getMaxDistance() && distance < bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+
+        synchronized (this) {
+            for (CacheEntry entry : expired) {
+                if (entries.remove(entry.id()) != null) {
+                    unindex(entry);
+                }
+            }
+            // 通过get刷新访问顺序；计算期间条目可能已被淘汰或失效
+            if (best == null || entries.get(best.id()) == null) {
+                return null;
+            }
+        }
+        log.debug("Answer cache hit for model {} with cosine distance {}", modelId, bestDistance);
+        return best.answer();
+    }
+
+    @Override
+    public void put(String modelId, String scope, float[] queryVector, List<KnowledgeBase> documents, String answer) {
+        if (!properties.isEnabled() || scope == null || queryVector == null || queryVector.length == 0
+                || answer == null || answer.isBlank()) {
+            return;
+        }
+        CacheEntry entry = new CacheEntry(
+                idGenerator.incrementAndGet(),
+                new GroupKey(modelId, scope, documentVersions(documents)),
+                normalize(queryVector),
+                answer,
+                System.currentTimeMillis() + properties.getTtlSeconds() * 1000);
+
+        synchronized (this) {
+            entries.put(entry.id(), entry);
+            groups.computeIfAbsent(entry.key(), k -> new ArrayList<>()).add(entry);
+            for (Long docId : entry.key().documentVersions().keySet()) {
+                entriesByDocument.computeIfAbsent(docId, k -> new HashSet<>()).add(entry.id());
+            }
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (entries.size() > properties.getMaxEntries() && iterator.hasNext()) {
+                CacheEntry eldest = iterator.next();
+                iterator.remove();
+                unindex(eldest);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateDocument(Long knowledgeId) {
+        synchronized (this) {
+            Set<Long> entryIds = entriesByDocument.remove(knowledgeId);
+            if (entryIds == null) {
+                return;
+            }
+            for (Long entryId : entryIds) {
+                CacheEntry entry = entries.remove(entryId);
+                if (entry != null) {
+                    unindex(entry);
+                }
+            }
+            log.debug("Invalidated {} cached answers referencing knowledge {}", entryIds.size(), knowledgeId);
+        }
+    }
+
+    private void unindex(CacheEntry entry) {
+        List<CacheEntry> group = groups.get(entry.key());
+        if (group != null) {
+            group.remove(entry);
+            if (group.isEmpty()) {
+                groups.remove(entry.key());
+            }
+        }
+        for (Long docId : entry.key().documentVersions().keySet()) {
+            Set<Long> entryIds = entriesByDocument.get(docId);
+            if (entryIds != null) {
+                entryIds.remove(entry.id());
+                if (entryIds.isEmpty()) {
+                    entriesByDocument.remove(docId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 文档版本由更新时间和内容共同决定，缓存中的文档副本缺少更新时间时仍能识别内容变化
+     */
+    private Map<Long, String> documentVersions(List<KnowledgeBase> documents) {
+        Map<Long, String> versions = new HashMap<>();
+        for (KnowledgeBase doc : documents) {
+            versions.put(doc.getId(), doc.getUpdatedAt() + ":" + Objects.hash(doc.getTitle(), doc.getContent()));
+        }
+        return versions;
+    }
+
+    /**
+     * 返回归一化后的副本，查询向量可能与向量缓存共享，不能原地修改
+     */
+    private static float[] normalize(float[] vector) {
+        float[] result = new float[vector.length];
+        double norm = 0;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = vector[i];
+            norm += result[i] * result[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] /= (float) norm;
+            }
+        }
+        return result;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record GroupKey(String modelId, String scope, Map<Long, String> documentVersions) {}
+
+    private record CacheEntry(
+        long id,
+        GroupKey key,
+        float[] vector,
+        String answer,
+        long expiresAt
+    ) {}
+}
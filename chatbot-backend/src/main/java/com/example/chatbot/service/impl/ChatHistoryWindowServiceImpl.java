@@ -0,0 +1,163 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.HistoryWindowProperties;
+import com.example.chatbot.service.ChatHistoryWindowService;
+import com.example.chatbot.service.ChatMessageWriter;
+import com.example.chatbot.util.ChatMessageMerger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于Redis List的会话滑动窗口
+ * 每个会话保存最近N条消息，追加和裁剪在同一个Lua脚本中原子完成，
+ * 读取窗口只需要一次Redis往返，只有窗口不存在时才回源数据库。
+ * 窗口不存在期间追加的消息连同去重键暂存在staging列表中，重建时与数据库快照按键合并，
+ * 回源和重建之间追加的消息不会丢失。
+ * 列表键、就绪标记键和暂存键使用相同的hash tag，保证在集群模式下位于同一个slot。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatHistoryWindowServiceImpl implements ChatHistoryWindowService {
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ChatMessageMapper chatMessageMapper;
+    private final HistoryWindowProperties properties;
+    private final ChatMessageWriter chatMessageWriter;
+
+    private static final String WINDOW_KEY = "chat_window:";
+    private static final String WINDOW_READY_KEY = "chat_window_ready:";
+    private static final String WINDOW_STAGING_KEY = "chat_window_staging:";
+
+    // KEYS[1]=窗口列表 KEYS[2]=就绪标记；窗口未建立时返回nil，由调用方回源数据库
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[2]) == 0 then return false end " +
+            "return redis.call('lrange', KEYS[1], 0, -1)",
+            List.class);
+
+    // KEYS[3]=暂存列表 ARGV[1]=消息 ARGV[2]=窗口大小 ARGV[3]=过期时间 ARGV[4]=去重键
+    // 窗口已建立时直接追加；未建立时把去重键和消息成对暂存，等待重建时合并
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[2]) == 0 then " +
+            "  redis.call('rpush', KEYS[3], ARGV[4], ARGV[1]) " +
+            "  redis.call('ltrim', KEYS[3], -2 * tonumber(ARGV[2]), -1) " +
+            "  redis.call('expire', KEYS[3], ARGV[3]) " +
+            "  return 0 " +
+            "end " +
+            "redis.call('rpush', KEYS[1], ARGV[1]) " +
+            "redis.call('ltrim', KEYS[1], -tonumber(ARGV[2]), -1) " +
+            "redis.call('expire', KEYS[1], ARGV[3]) " +
+            "redis.call('expire', KEYS[2], ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    // ARGV[1]=窗口大小 ARGV[2]=过期时间 ARGV[3]=快照消息数n ARGV[4..3+n]=快照去重键 ARGV[4+n..]=按时间正序的快照消息
+    // 暂存列表中不在快照里的消息晚于快照，接在快照之后；并发重建时只有第一个生效，都返回重建后的窗口
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[2]) == 1 then return redis.call('lrange', KEYS[1], 0, -1) end " +
+            "local n = tonumber(ARGV[3]) " +
+            "local known = {} " +
+            "for i = 4, 3 + n do known[ARGV[i]] = true end " +
+            "local staged = redis.call('lrange', KEYS[3], 0, -1) " +
+            "redis.call('del', KEYS[1], KEYS[3]) " +
+            "for i = 4 + n, #ARGV do redis.call('rpush', KEYS[1], ARGV[i]) end " +
+            "for i = 1, #staged - 1, 2 do " +
+            "  if not known[staged[i]] then redis.call('rpush', KEYS[1], staged[i + 1]) end " +
+            "end " +
+            "redis.call('ltrim', KEYS[1], -tonumber(ARGV[1]), -1) " +
+            "redis.call('expire', KEYS[1], ARGV[2]) " +
+            "redis.call('set', KEYS[2], '1', 'EX', ARGV[2]) " +
+            "return redis.call('lrange', KEYS[1], 0, -1)",
+            List.class);
+
+    @Override
+    public List<ChatMessage> getRecentMessages(String sessionId, Long userId) {
+        List<String> keys = keys(sessionId, userId);
+        try {
+            List<?> cached = redisTemplate.execute(READ_SCRIPT, keys.subList(0, 2));
+            if (cached != null) {
+                return toMessages(cached);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read chat window for session {}, falling back to database", sessionId, e);
+            return loadFromDatabase(sessionId, userId);
+        }
+
+        List<ChatMessage> history = loadFromDatabase(sessionId, userId);
+        try {
+            List<Object> args = new ArrayList<>(history.size() * 2 + 3);
+            args.add(properties.getSize());
+            args.add(properties.getTtlSeconds());
+            args.add(history.size());
+            for (ChatMessage message : history) {
+                args.add(ChatMessageMerger.key(message));
+            }
+            args.addAll(history);
+            List<?> rebuilt = redisTemplate.execute(REBUILD_SCRIPT, keys, args.toArray());
+            if (rebuilt != null) {
+                return toMessages(rebuilt);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to rebuild chat window for session {}", sessionId, e);
+        }
+        return history;
+    }
+
+    @Override
+    public void append(ChatMessage message) {
+        try {
+            redisTemplate.execute(APPEND_SCRIPT, keys(message.getSessionId(), message.getUserId()),
+                    message, properties.getSize(), properties.getTtlSeconds(), ChatMessageMerger.key(message));
+        } catch (Exception e) {
+            // 追加失败时删除窗口，下一次读取会从数据库重建，避免窗口缺少消息
+            log.warn("Failed to append message to chat window for session {}", message.getSessionId(), e);
+            evict(message.getSessionId(), message.getUserId());
+        }
+    }
+
+    @Override
+    public void evict(String sessionId, Long userId) {
+        try {
+            redisTemplate.delete(keys(sessionId, userId));
+        } catch (Exception e) {
+            log.warn("Failed to evict chat window for session {}", sessionId, e);
+        }
+    }
+
+    /**
+     * 先取写入器中尚未落库的消息再查数据库，查询期间落库的消息两边都有，按去重键合并
+     */
+    private List<ChatMessage> loadFromDatabase(String sessionId, Long userId) {
+        List<ChatMessage> pending = chatMessageWriter.pendingMessages(sessionId, userId);
+        List<ChatMessage> history = chatMessageMapper.findRecentBySessionIdAndUserId(sessionId, userId, properties.getSize());
+        // 查询结果按时间倒序，反转后保持时间顺序
+        Collections.reverse(history);
+        List<ChatMessage> merged = ChatMessageMerger.merge(history, pending);
+        return merged.size() > properties.getSize()
+                ? new ArrayList<>(merged.subList(merged.size() - properties.getSize(), merged.size()))
+                : merged;
+    }
+
+    private static List<ChatMessage> toMessages(List<?> items) {
+        List<ChatMessage> messages = new ArrayList<>(items.size());
+        for (Object item : items) {
+            messages.add((ChatMessage) item);
+        }
+        return messages;
+    }
+
+    private List<String> keys(String sessionId, Long userId) {
+        String tag = "{" + userId + ":" + sessionId + "}";
+        return List.of(WINDOW_KEY + tag, WINDOW_READY_KEY + tag, WINDOW_STAGING_KEY + tag);
+    }
+}
@@ -0,0 +1,482 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.MessageWriteBehindProperties;
+import com.example.chatbot.service.ChatMessageWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 聊天消息异步批量写入
+ * 消息先进入有界内存队列，由单个后台线程按数量或时间合并成多行INSERT写入数据库。
+ * 数据库写入失败或队列已满时，消息追加到本地溢出文件，数据库恢复后先回放溢出文件再写入新消息。
+ * 按提交顺序落库：队列已满时把队列中已有的消息连同新消息一起按顺序追加到溢出文件，
+ * 从队列取消息与追加溢出文件互斥，且只在溢出文件为空时进行，溢出文件中的消息始终早于队列中的消息；
+ * 写入失败的批次放进回放文件，排在此后溢出的消息之前。同一会话的消息依次提交，因此按提交顺序写入数据库。
+ * 提交不等待刷盘锁：溢出文件的追加只持有spoolLock，回放前先把溢出文件整体改名，
+ * 回放过程中新的溢出消息写入新文件，两者互不阻塞。
+ */
+@Slf4j
+@Service
+public class ChatMessageWriterImpl implements ChatMessageWriter {
+    private final ChatMessageMapper chatMessageMapper;
+    private final MessageWriteBehindProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final LinkedBlockingQueue<ChatMessage> queue;
+    private final Semaphore wakeup = new Semaphore(0);
+    // 刷盘锁，保证任意时刻只有一个线程写数据库和回放溢出文件
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // 溢出文件锁，只保护溢出文件的追加、改名和过滤，持有时间与一次本地文件写入相当
+    private final ReentrantLock spoolLock = new ReentrantLock();
+    private final AtomicLong spooledPending = new AtomicLong();
+    private final Path spoolPath;
+    // 正在回放的溢出文件，只由持有flushLock的线程访问
+    private final Path replayPath;
+    // 已提交但尚未写入数据库的消息，按会话索引，供查询历史时补齐
+    private final Map<String, Set<ChatMessage>> unwritten = new ConcurrentHashMap<>();
+    // 未开启溢出文件时写入失败的批次，只由持有flushLock的线程访问
+    private final List<ChatMessage> retryBatch = new ArrayList<>();
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final Counter writtenCounter;
+    private final Counter spooledCounter;
+    private final Counter failureCounter;
+    private final Counter queueFullCounter;
+    private final Timer flushTimer;
+
+    public ChatMessageWriterImpl(ChatMessageMapper chatMessageMapper,
+                                 MessageWriteBehindProperties properties,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.chatMessageMapper = chatMessageMapper;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.spoolPath = Path.of(properties.getSpoolPath());
+        this.replayPath = Path.of(properties.getSpoolPath() + ".replaying");
+
+        Gauge.builder("chat.messages.write.queue.size", queue, LinkedBlockingQueue::size)
+                .description("等待写入数据库的消息数")
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.write.spool.size", spooledPending, AtomicLong::get)
+                .description("溢出文件中等待回放的消息数")
+                .register(meterRegistry);
+        this.writtenCounter = meterRegistry.counter("chat.messages.write.written");
+        this.spooledCounter = meterRegistry.counter("chat.messages.write.spooled");
+        this.failureCounter = meterRegistry.counter("chat.messages.write.failures");
+        this.queueFullCounter = meterRegistry.counter("chat.messages.write.queue.full");
+        this.flushTimer = meterRegistry.timer("chat.messages.write.flush");
+    }
+
+    @PostConstruct
+    public void start() {
+        long spooled = 0;
+        for (Path path : List.of(replayPath, spoolPath)) {
+            List<ChatMessage> messages = readSpool(path);
+            if (messages != null) {
+                messages.forEach(this::track);
+                spooled += messages.size();
+            }
+        }
+        spooledPending.set(spooled);
+        running = true;
+        flusher = new Thread(this::runFlusher, "chat-message-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        wakeup.release();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 退出前写完剩余消息，写不进数据库的会留在溢出文件中
+        flush();
+    }
+
+    @Override
+    public void write(ChatMessage message) {
+        if (message.getCreatedAt() == null) {
+            message.setCreatedAt(LocalDateTime.now());
+        }
+        track(message);
+        if (!queue.offer(message)) {
+            queueFullCounter.increment();
+            overflow(message);
+            return;
+        }
+        if (queue.size() >= properties.getBatchSize()) {
+            wakeup.release();
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushLock.lock();
+        try {
+            drainQueue();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public List<ChatMessage> pendingMessages(String sessionId, Long userId) {
+        Set<ChatMessage> messages = unwritten.get(sessionId);
+        if (messages == null) {
+            return List.of();
+        }
+        return messages.stream()
+                .filter(message -> Objects.equals(message.getUserId(), userId))
+                .sorted(Comparator.comparing(ChatMessage::getCreatedAt))
+                .toList();
+    }
+
+    /**
+     * 持有flushLock等待正在执行的INSERT结束，再从队列、重试批次和两个溢出文件中移除该会话的消息
+     */
+    @Override
+    public void discardSession(String sessionId, Long userId) {
+        Predicate<ChatMessage> matches = message -> sessionId.equals(message.getSessionId())
+                && Objects.equals(userId, message.getUserId());
+        flushLock.lock();
+        try {
+            queue.removeIf(matches);
+            retryBatch.removeIf(matches);
+            filterSpool(replayPath, matches);
+            spoolLock.lock();
+            try {
+                filterSpool(spoolPath, matches);
+            } finally {
+                spoolLock.unlock();
+            }
+            unwritten.computeIfPresent(sessionId, (key, messages) -> {
+                messages.removeIf(matches);
+                return messages.isEmpty() ? null : messages;
+            });
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                wakeup.tryAcquire(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                wakeup.drainPermits();
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error in chat message writer", e);
+            }
+        }
+    }
+
+    // 调用方需持有flushLock
+    private void drainQueue() {
+        if (!retryBatch.isEmpty()) {
+            if (!insert(retryBatch)) {
+                return;
+            }
+            untrack(retryBatch);
+            retryBatch.clear();
+        }
+        // 回放过程中可能有新的溢出消息，回放到溢出文件为空为止
+        while (Files.exists(replayPath) || Files.exists(spoolPath)) {
+            if (!replaySpool()) {
+                // 数据库仍不可用，新消息继续追加到溢出文件之后，保证回放顺序
+                spoolQueue(null);
+                return;
+            }
+        }
+        List<ChatMessage> batch = new ArrayList<>(properties.getBatchSize());
+        while (drainBatch(batch)) {
+            if (!insert(batch)) {
+                if (properties.isSpoolEnabled()) {
+                    retainFailedBatch(batch);
+                } else {
+                    // 未开启溢出文件时保留失败的批次，下一轮优先重试，队列中的消息继续排在它之后
+                    retryBatch.addAll(batch);
+                }
+                return;
+            }
+            untrack(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 溢出文件为空时才从队列取一批消息，与spoolQueue互斥；溢出文件不为空时队列中的消息留到下一轮回放之后
+     */
+    private boolean drainBatch(List<ChatMessage> batch) {
+        spoolLock.lock();
+        try {
+            return !Files.exists(spoolPath) && queue.drainTo(batch, properties.getBatchSize()) > 0;
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    /**
+     * 写入失败的批次早于此后溢出的消息，写入回放文件，下一轮先于溢出文件回放；队列中的消息留在队列中
+     * 此时回放文件已处理完，调用方需持有flushLock
+     */
+    private void retainFailedBatch(List<ChatMessage> batch) {
+        try {
+            writeSpool(replayPath, batch);
+            spooledPending.addAndGet(batch.size());
+            spooledCounter.increment(batch.size());
+        } catch (IOException e) {
+            log.error("Failed to spool {} chat messages to {}, keeping them for retry", batch.size(), replayPath, e);
+            retryBatch.addAll(batch);
+        }
+    }
+
+    private boolean insert(List<ChatMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            chatMessageMapper.insertBatch(batch);
+            writtenCounter.increment(batch.size());
+            return true;
+        } catch (Exception e) {
+            failureCounter.increment();
+            log.warn("Failed to write {} chat messages to database", batch.size(), e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 队列已满时的降级处理：优先把队列连同当前消息追加到溢出文件；
+     * 未开启溢出时同步刷盘，先写完队列中更早的消息再让当前消息入队，数据库不可用时丢弃
+     */
+    private void overflow(ChatMessage message) {
+        if (properties.isSpoolEnabled()) {
+            spoolQueue(message);
+            wakeup.release();
+            return;
+        }
+        flushLock.lock();
+        try {
+            drainQueue();
+            if (queue.offer(message)) {
+                return;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        untrack(List.of(message));
+        log.error("Dropping chat message for session {}: database write failed", message.getSessionId());
+    }
+
+    /**
+     * 把队列中的消息按提交顺序追加到溢出文件，message不为null时排在最后
+     * 持有spoolLock完成取出和追加，与drainBatch互斥，溢出文件中的消息始终早于队列中的消息
+     */
+    private void spoolQueue(ChatMessage message) {
+        spoolLock.lock();
+        try {
+            List<ChatMessage> messages = new ArrayList<>(queue.size() + 1);
+            queue.drainTo(messages);
+            if (message != null) {
+                messages.add(message);
+            }
+            if (!messages.isEmpty()) {
+                spool(messages);
+            }
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    private void spool(List<ChatMessage> messages) {
+        spoolLock.lock();
+        try {
+            if (spoolPath.getParent() != null) {
+                Files.createDirectories(spoolPath.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(spoolPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (ChatMessage message : messages) {
+                    writer.write(objectMapper.writeValueAsString(message));
+                    writer.newLine();
+                }
+            }
+            spooledPending.addAndGet(messages.size());
+            spooledCounter.increment(messages.size());
+        } catch (IOException e) {
+            untrack(messages);
+            log.error("Failed to spool {} chat messages to {}", messages.size(), spoolPath, e);
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    /**
+     * 按批回放溢出文件，部分成功时把剩余消息写回回放文件，避免重复插入
+     * 上一轮的回放文件处理完之后，才把当前的溢出文件改名为回放文件，新的溢出消息继续写入溢出文件
+     * 调用方需持有flushLock
+     * @return 溢出文件是否已全部回放
+     */
+    private boolean replaySpool() {
+        if (!Files.exists(replayPath)) {
+            spoolLock.lock();
+            try {
+                if (Files.exists(spoolPath)) {
+                    Files.move(spoolPath, replayPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.error("Failed to move chat message spool {} to {}", spoolPath, replayPath, e);
+                return false;
+            } finally {
+                spoolLock.unlock();
+            }
+        }
+        List<ChatMessage> pending = readSpool(replayPath);
+        if (pending == null) {
+            return false;
+        }
+        int index = 0;
+        while (index < pending.size()) {
+            List<ChatMessage> batch = pending.subList(index, Math.min(pending.size(), index + properties.getBatchSize()));
+            if (!insert(batch)) {
+                break;
+            }
+            untrack(batch);
+            index += batch.size();
+        }
+        spooledPending.addAndGet(-index);
+        try {
+            if (index == pending.size()) {
+                Files.deleteIfExists(replayPath);
+                if (index > 0) {
+                    log.info("Replayed {} spooled chat messages", index);
+                }
+                return true;
+            }
+            if (index > 0) {
+                writeSpool(replayPath, pending.subList(index, pending.size()));
+            }
+        } catch (IOException e) {
+            log.error("Failed to rewrite chat message spool {}", replayPath, e);
+        }
+        return false;
+    }
+
+    /**
+     * 从溢出文件中删除匹配的消息，调用方需持有对应文件的锁
+     */
+    private void filterSpool(Path path, Predicate<ChatMessage> matches) {
+        List<ChatMessage> messages = readSpool(path);
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        List<ChatMessage> remaining = messages.stream().filter(matches.negate()).toList();
+        if (remaining.size() == messages.size()) {
+            return;
+        }
+        try {
+            if (remaining.isEmpty()) {
+                Files.deleteIfExists(path);
+            } else {
+                writeSpool(path, remaining);
+            }
+            spooledPending.addAndGet(remaining.size() - messages.size());
+        } catch (IOException e) {
+            log.error("Failed to remove discarded chat messages from spool {}", path, e);
+        }
+    }
+
+    private void writeSpool(Path path, List<ChatMessage> messages) throws IOException {
+        List<String> lines = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            lines.add(objectMapper.writeValueAsString(message));
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    private void track(ChatMessage message) {
+        unwritten.compute(message.getSessionId(), (key, messages) -> {
+            Set<ChatMessage> set = messages == null ? ConcurrentHashMap.newKeySet() : messages;
+            set.add(message);
+            return set;
+        });
+    }
+
+    private void untrack(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            unwritten.computeIfPresent(message.getSessionId(), (key, set) -> {
+                set.remove(message);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /**
+     * 读取溢出文件，无法解析的行记录日志后跳过
+     * @return 溢出的消息，文件读取失败时返回null
+     */
+    private List<ChatMessage> readSpool(Path path) {
+        List<ChatMessage> messages = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return messages;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Failed to read chat message spool {}", path, e);
+            return null;
+        }
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                messages.add(objectMapper.readValue(line, ChatMessage.class));
+            } catch (IOException e) {
+                log.error("Skipping malformed spooled chat message: {}", line, e);
+            }
+        }
+        return messages;
+    }
+}
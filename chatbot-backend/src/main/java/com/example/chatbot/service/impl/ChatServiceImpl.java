@@ -1,19 +1,33 @@
 package com.example.chatbot.service.impl;
 
+import com.example.chatbot.properties.AnswerCacheProperties;
 import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.dto.AssembledContext;
 import com.example.chatbot.dto.ChatRequest;
 import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.dto.ModelRoute;
+import com.example.chatbot.dto.RetrievalResult;
 import com.example.chatbot.entity.ChatMessage;
 import com.example.chatbot.entity.KnowledgeBase;
-import com.example.chatbot.entity.User;
 import com.example.chatbot.mapper.ChatMessageMapper;
-import com.example.chatbot.mapper.KnowledgeBaseMapper;
-import com.example.chatbot.mapper.UserMapper;
+import com.example.chatbot.security.ChatbotUserPrincipal;
+import com.example.chatbot.service.AnswerCacheService;
+import com.example.chatbot.service.ChatHistoryWindowService;
+import com.example.chatbot.service.ChatMessageWriter;
 import com.example.chatbot.service.ChatService;
-import com.example.chatbot.service.KnowledgeService;
+import com.example.chatbot.service.KnowledgeRetrievalService;
+import com.example.chatbot.service.LlmAdmissionService;
+import com.example.chatbot.service.ModelRouter;
 import com.example.chatbot.service.RedisDistributedLock;
 import com.example.chatbot.service.RedisService;
+import com.example.chatbot.util.ChatMessageMerger;
+import com.example.chatbot.util.ChatTrace;
+import com.example.chatbot.util.ContextAssembler;
 import com.example.chatbot.util.KeywordExtractor;
+import com.example.chatbot.util.SingleFlight;
+import com.example.chatbot.util.StreamCoalescer;
+import com.example.chatbot.util.ThinkBlockFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -29,12 +43,20 @@ import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,161 +65,165 @@ import java.util.stream.Collectors;
 public class ChatServiceImpl implements ChatService {
     private final ChatClient chatClient;
     private final ChatMessageMapper chatMessageMapper;
-    private final UserMapper userMapper;
+    private final ChatHistoryWindowService chatHistoryWindowService;
+    private final ChatMessageWriter chatMessageWriter;
     private final ModelProperties modelProperties;
-    private final KnowledgeBaseMapper knowledgeBaseMapper;
     private final RedisService redisService;
     private final KeywordExtractor keywordExtractor;
-    private final KnowledgeService knowledgeService;
+    private final ContextAssembler contextAssembler;
+    private final StreamCoalescer streamCoalescer;
+    private final LlmAdmissionService llmAdmissionService;
+    private final ModelRouter modelRouter;
+    private final SingleFlight<String> inFlightStreams = new SingleFlight<>();
+    private final KnowledgeRetrievalService knowledgeRetrievalService;
+    private final AnswerCacheService answerCacheService;
+    private final AnswerCacheProperties answerCacheProperties;
     private final Scheduler elasticScheduler;
     private final RedisDistributedLock distributedLock;
-    private static final int MIN_REQUIRED_RESULTS = 3;
+    private final MeterRegistry meterRegistry;
 
-    private User getCurrentUser() {
+    // Qwen3的软开关，追加在用户消息末尾时跳过思考过程
+    private static final String NO_THINK_SUFFIX = " /no_think";
+
+    // 用户ID由JWT过滤器写入认证主体，无需再按用户名查询数据库
+    private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        return userMapper.findByUsername(username);
+        return ((ChatbotUserPrincipal) authentication.getPrincipal()).getId();
     }
 
-    // 提取公共的消息处理逻辑
-    private ProcessMessageResult processMessageCommon(ChatRequest request) {
-        String sessionId = getOrCreateSessionId(request.getSessionId());
-        User currentUser = getCurrentUser();
-        String modelId = request.getModelId() != null ? request.getModelId() : "qwen3";
-        
-        // 清理用户消息
-        String cleanedMessage = cleanMessage(request.getMessage());
-
-        // 提取关键词并搜索相关文档
-        List<String> keywords = keywordExtractor.extractKeywords(cleanedMessage, 3);
-        List<KnowledgeBase> relevantDocs = searchRelevantDocuments(cleanedMessage, keywords);
+    /**
+     * 生成前的准备阶段按依赖关系并行执行：
+     * 关键词提取 -> 多层检索 与 会话历史读取 -> 保存用户消息 两条分支同时进行，
+     * 两者都完成后再查语义缓存、组装知识库上下文和提示词。
+     * 用户消息在历史读取之后保存，避免本轮消息出现在历史中；这一步与检索重叠，不占用关键路径。
+     * Redis文档缓存回填在后台执行，不等待完成。
+     */
+    private Mono<ProcessMessageResult> prepareMessage(ChatRequest request, ModelRoute route, Long userId, ChatTrace trace) {
+        return Mono.defer(() -> {
+            String sessionId = getOrCreateSessionId(request.getSessionId());
+            String modelId = route.modelId();
+
+            // 获取模型配置
+            ModelProperties.ModelOption modelOptions = modelProperties.getOptions().get(modelId);
+            if (modelOptions == null) {
+                return Mono.error(new IllegalArgumentException("Invalid model ID: " + modelId));
+            }
 
-        // 构建上下文
-        StringBuilder contextBuilder = buildContextFromDocs(relevantDocs);
-        
-        // 构建消息上下文
-        List<Message> messages = buildMessageContext(sessionId);
+            // 清理用户消息
+            String cleanedMessage = trace.time("clean", () -> cleanMessage(request.getMessage()));
+
+            // 提取关键词并搜索相关文档
+            Mono<Retrieval> retrievalBranch = Mono.fromCallable(() ->
+                            trace.time("keywords", () -> keywordExtractor.extractKeywords(cleanedMessage, 3)))
+                    .subscribeOn(elasticScheduler)
+                    .flatMap(keywords -> searchRelevantDocuments(cleanedMessage, keywords, trace)
+                            .map(retrieval -> new Retrieval(keywords, retrieval)));
+
+            // 读取会话历史，之后保存用户消息
+            Mono<List<Message>> historyBranch = Mono.fromCallable(() -> {
+                        List<Message> history = trace.time("history", () -> buildMessageContext(sessionId, userId));
+                        trace.run("save_user", () -> saveUserMessage(cleanedMessage, sessionId, userId));
+                        return history;
+                    })
+                    .subscribeOn(elasticScheduler);
+
+            return Mono.zip(retrievalBranch, historyBranch)
+                    .map(tuple -> buildPrompt(tuple.getT1(), tuple.getT2(), cleanedMessage,
+                            sessionId, userId, route, modelOptions, trace));
+        });
+    }
 
-        //保存用户消息
-        saveUserMessage(cleanedMessage, sessionId, currentUser);
-        
-        // 如果有相关文档，添加到用户消息中
-        if (!contextBuilder.isEmpty()) {
-            String enhancedMessage = cleanedMessage + "\n\n" + contextBuilder;
-            messages.add(new UserMessage(enhancedMessage));
-        } else {
-            messages.add(new UserMessage(cleanedMessage));
+    private ProcessMessageResult buildPrompt(Retrieval retrieval, List<Message> messages, String cleanedMessage,
+                                             String sessionId, Long userId, ModelRoute route,
+                                             ModelProperties.ModelOption modelOptions, ChatTrace trace) {
+        String modelId = route.modelId();
+        List<KnowledgeBase> relevantDocs = retrieval.result().documents();
+
+        // 语义缓存命中时不再构建提示词，直接复用已有回答；缓存按会话历史隔离，跨用户共享
+        String cacheScope = answerCacheScope(messages);
+        String cachedAnswer = answerCacheService.lookup(modelId, cacheScope, retrieval.result().queryVector(), relevantDocs);
+        if (cachedAnswer != null) {
+            return new ProcessMessageResult(List.of(), null, sessionId, modelId, userId, retrieval.result(),
+                    cacheScope, route.degraded(), cachedAnswer);
         }
 
-        // 获取模型配置
-        ModelProperties.ModelOption modelOptions = modelProperties.getOptions().get(modelId);
-        if (modelOptions == null) {
-            throw new IllegalArgumentException("Invalid model ID: " + modelId);
+        // 在模型的token预算内组装知识库上下文
+        AssembledContext context = trace.time("context",
+                () -> contextAssembler.assemble(relevantDocs, retrieval.keywords(), modelOptions.getContextTokenBudget()));
+
+        // 如果有相关文档，添加到用户消息中
+        String userPrompt = context.text().isEmpty() ? cleanedMessage : cleanedMessage + "\n\n" + context.text();
+        // 路由降级时关闭思考过程以缩短首字延迟
+        if (route.skipReasoning()) {
+            userPrompt = userPrompt + NO_THINK_SUFFIX;
         }
+        messages.add(new UserMessage(userPrompt));
 
         ChatOptions options = ChatOptions.builder()
                 .model(modelOptions.getModel())
                 .temperature(modelOptions.getTemperature())
                 .topP(modelOptions.getTopP())
                 .topK(modelOptions.getTopK())
-                .maxTokens(modelOptions.getMaxTokens())
+                .maxTokens(route.maxTokens() != null ? route.maxTokens() : modelOptions.getMaxTokens())
                 .presencePenalty(modelOptions.getPresencePenalty())
                 .frequencyPenalty(modelOptions.getFrequencyPenalty())
                 .stopSequences(modelOptions.getStop())
                 .build();
 
-        return new ProcessMessageResult(messages, options, sessionId, modelId, currentUser);
+        return new ProcessMessageResult(messages, options, sessionId, modelId, userId, retrieval.result(),
+                cacheScope, route.degraded(), null);
     }
 
     // 搜索结果处理
-    private List<KnowledgeBase> searchRelevantDocuments(String cleanedMessage, List<String> keywords) {
-        List<KnowledgeBase> combinedResults = new ArrayList<>();
-        
-        // 1. 首先从Redis搜索相关文档
-        List<KnowledgeBase> redisResults = redisService.searchKnowledge(keywords);
-        if (!redisResults.isEmpty()) {
-            combinedResults.addAll(redisResults);
-        }
-        
-        // 2. 如果Redis结果数量小于要求的最小数量，进行向量搜索
-        if (combinedResults.size() < MIN_REQUIRED_RESULTS) {
-            try {
-                // 2.1 使用完整的cleanedMessage进行向量搜索
-                List<KnowledgeBase> vectorResults = knowledgeService.searchSimilar(cleanedMessage, MIN_REQUIRED_RESULTS);
-                if (vectorResults != null && !vectorResults.isEmpty()) {
-                    // 合并结果，去重
-                    for (KnowledgeBase kb : vectorResults) {
-                        if (!combinedResults.contains(kb)) {
-                            combinedResults.add(kb);
-                        }
+    private Mono<RetrievalResult> searchRelevantDocuments(String cleanedMessage, List<String> keywords, ChatTrace trace) {
+        // 1. Redis、向量、数据库三层检索并发执行，受统一截止时间约束
+        return trace.time("retrieval", knowledgeRetrievalService.retrieveAsync(cleanedMessage, keywords))
+                .doOnNext(retrievalResult -> {
+                    // 各检索层的耗时从检索开始计算，到该层完成、超时或被取消为止
+                    for (RetrievalResult.TierReport tier : retrievalResult.tiers()) {
+                        trace.record("retrieval_" + tier.tier().name().toLowerCase(Locale.ROOT),
+                                TimeUnit.MILLISECONDS.toNanos(tier.elapsedMillis()));
                     }
-                }
-            } catch (Exception e) {
-                log.warn("Vector search failed, falling back to keyword search only", e);
-            }
-        }
-        
-        // 3. 如果结果数量仍然小于要求的最小数量，进行关键词搜索
-        if (combinedResults.size() < MIN_REQUIRED_RESULTS) {
-            List<KnowledgeBase> keywordResults = searchKnowledgeFromDB(keywords);
-            // 合并结果，去重
-            for (KnowledgeBase kb : keywordResults) {
-                if (!combinedResults.contains(kb)) {
-                    combinedResults.add(kb);
-                }
-            }
-        }
-        
-        // 4. 更新Redis缓存，使用分布式锁保护
-        for (KnowledgeBase doc : combinedResults) {
-            String lockKey = "knowledge:save:" + doc.getId();
-            String lockValue = distributedLock.tryLock(lockKey, 5, TimeUnit.SECONDS);
-            try {
-                if (lockValue != null) {
-                    // 统一使用saveDocToRedis，它会处理新文档保存和已有文档的更新
-                    redisService.saveDocToRedis(doc);
-                }
-            } finally {
-                if (lockValue != null) {
-                    distributedLock.unlock(lockKey, lockValue);
-                }
-            }
-        }
-        
-        return combinedResults;
+                    // 2. 在后台批量更新Redis缓存，不阻塞提示词组装；写入是幂等的，不需要分布式锁
+                    Mono.fromRunnable(() -> trace.run("cache_populate", () -> redisService.saveDocsToRedis(retrievalResult.documents())))
+                            .subscribeOn(elasticScheduler)
+                            .subscribe(null, error -> log.warn("Failed to populate knowledge cache", error));
+                });
     }
 
     // 构建文档上下文
-    private StringBuilder buildContextFromDocs(List<KnowledgeBase> relevantDocs) {
-        StringBuilder contextBuilder = new StringBuilder();
-        if (!relevantDocs.isEmpty()) {
-            contextBuilder.append("结合以下知识库内容回答：\n");
-            for (KnowledgeBase doc : relevantDocs) {
-                contextBuilder.append("标题：").append(doc.getTitle()).append("\n");
-                contextBuilder.append("内容：").append(doc.getContent()).append("\n\n");
-            }
-        }
-        return contextBuilder;
-    }
-
     @Override
     @Transactional
-    public ChatResponse processMessage(ChatRequest request) {
-        ProcessMessageResult result = processMessageCommon(request);
-
-        // 调用AI模型
-        String aiResponse = chatClient.prompt()
-                .messages(result.messages())
-                .options(result.options())
-                .call()
-                .content();
-
-        // 清理AI响应
-        assert aiResponse != null;
-        String cleanedResponse = cleanAiResponse(aiResponse);
+    public ChatResponse processMessage(ChatRequest request, ModelRoute route, ChatTrace trace) {
+        Long userId = trace.time("user_lookup", this::getCurrentUserId);
+        ProcessMessageResult result = prepareMessage(request, route, userId, trace).block();
+
+        String cleanedResponse = result.cachedAnswer();
+        if (cleanedResponse == null) {
+            // 调用AI模型，受模型并发数限制；首字耗时包含排队等待
+            long generationStart = System.nanoTime();
+            String aiResponse = llmAdmissionService.admitBlocking(result.modelId(), result.userId(), () ->
+                    modelRouter.observe(result.modelId(), chatClient.prompt()
+                                    .messages(result.messages())
+                                    .options(result.options())
+                                    .stream()
+                                    .content())
+                            .transform(tokens -> recordGeneration(tokens, trace, generationStart))
+                            .collect(Collectors.joining())
+                            .block());
+
+            // 去掉think块，与流式接口使用同一个过滤器；完整回答已经在手，等待</think>不设上限
+            ThinkBlockFilter filter = new ThinkBlockFilter(Integer.MAX_VALUE);
+            filter.accept(aiResponse);
+            filter.finish();
+            cleanedResponse = filter.result();
+            cacheAnswer(result, cleanedResponse);
+        }
 
         // 保存AI响应
-        saveAssistantMessage(cleanedResponse, result.sessionId(), result.currentUser());
+        String answer = cleanedResponse;
+        trace.run("save_assistant", () -> saveAssistantMessage(answer, result.sessionId(), result.userId(), false));
+        log.debug("Chat timings for session {}: {}", result.sessionId(), trace.summary());
 
         return ChatResponse.builder()
                 .message(cleanedResponse)
@@ -208,61 +234,194 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     @Transactional
-    public Flux<ChatResponse> processMessageReactive(ChatRequest request) {
-        return Mono.fromCallable(() -> processMessageCommon(request))
-            .subscribeOn(elasticScheduler)  // Move blocking operation to elastic thread pool
+    public Flux<ChatResponse> processMessageReactive(ChatRequest request, ModelRoute route, ChatTrace trace) {
+        // 在SSE响应头发送之前检查排队情况，队列已满时直接返回503
+        llmAdmissionService.checkCapacity(route.modelId());
+        // 认证信息保存在请求线程上，需要在切换线程之前读取
+        Long userId = trace.time("user_lookup", this::getCurrentUserId);
+        StreamState state = new StreamState();
+        // 客户端断开时Spring取消订阅：检索阶段取消尚未完成的检索层，排队阶段移出等待队列，
+        // 生成阶段在没有其他合并的调用方时取消模型的HTTP流
+        return prepareMessage(request, route, userId, trace)
             .flatMapMany(result -> {
-                StringBuilder fullResponse = new StringBuilder();
-                return chatClient.prompt()
-                        .messages(result.messages())
-                        .options(result.options())
-                        .stream()
-                        .content()
-                        .mapNotNull(chunk -> {
-                            if (!chunk.isEmpty()) {
-                                fullResponse.append(chunk);
-                                return buildChatResponse(chunk, result.sessionId(), result.modelId());
-                            }
-                            return null;
-                        })
+                state.waiting(result);
+                // 命中缓存时按分片回放；否则提示词完全相同的并发请求共用一次模型调用，每个调用方各自保存回答
+                long generationStart = System.nanoTime();
+                Flux<String> chunks = result.cachedAnswer() != null
+                        ? replayCachedAnswer(result.cachedAnswer())
+                        : inFlightStreams.join(singleFlightKey(result), () -> generateAnswerStream(result))
+                                .transform(tokens -> recordGeneration(tokens, trace, generationStart))
+                                .transform(streamCoalescer::coalesce);
+                AtomicLong sequence = new AtomicLong();
+                return chunks
+                        .doOnNext(state::append)
+                        .map(chunk -> buildChatResponse(chunk, result.sessionId(), result.modelId(), sequence.incrementAndGet()))
                         .doOnComplete(() -> {
-                            // Move blocking save operation to elastic thread pool
-                            Mono.fromRunnable(() -> 
-                                saveAssistantMessage(cleanAiResponse(fullResponse.toString()), result.sessionId(), result.currentUser())
-                            ).subscribeOn(elasticScheduler).subscribe();
+                            // 保存在boundedElastic线程上执行，不阻塞流式响应线程
+                            saveAssistantMessageAsync(state.answer().stripTrailing(), result.sessionId(), result.userId(), false);
+                            log.debug("Chat timings for session {}: {}", result.sessionId(), trace.summary());
                         })
                         .doOnError(error -> {
                             log.error("Error in streaming response: {}", error.getMessage());
                         });
-            });
+            })
+            .doOnCancel(() -> onStreamCancelled(state));
+    }
+
+    /**
+     * 客户端中途断开：记录断开时所处的阶段，已经发送的部分回答标记为截断后保存
+     */
+    private void onStreamCancelled(StreamState state) {
+        ProcessMessageResult result;
+        String stage;
+        String partial;
+        synchronized (state) {
+            result = state.result;
+            stage = state.stage;
+            partial = state.answer.toString().stripTrailing();
+        }
+        meterRegistry.counter("chat.stream.cancelled", "stage", stage).increment();
+        if (result == null) {
+            log.info("Client disconnected during retrieval");
+            return;
+        }
+        log.info("Client disconnected from session {} while {}, {} chars sent", result.sessionId(), stage, partial.length());
+        if (!partial.isEmpty()) {
+            saveAssistantMessageAsync(partial, result.sessionId(), result.userId(), true);
+        }
+    }
+
+    // 记录本次请求的首字耗时和生成总耗时，均从请求模型（含排队）开始计算
+    private Flux<String> recordGeneration(Flux<String> tokens, ChatTrace trace, long generationStart) {
+        AtomicBoolean first = new AtomicBoolean(true);
+        return tokens
+                .doOnNext(token -> {
+                    if (first.compareAndSet(true, false)) {
+                        trace.record("first_token", System.nanoTime() - generationStart);
+                    }
+                })
+                .doOnComplete(() -> trace.record("generation", System.nanoTime() - generationStart));
+    }
+
+    // 调用模型并流式过滤think块，只输出正文；完成后把清理后的回答写入语义缓存
+    private Flux<String> generateAnswerStream(ProcessMessageResult result) {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+        return llmAdmissionService.admit(result.modelId(), result.userId(), () ->
+                        modelRouter.observe(result.modelId(), chatClient.prompt()
+                                .messages(result.messages())
+                                .options(result.options())
+                                .stream()
+                                .content()))
+                .map(filter::accept)
+                .concatWith(Mono.fromCallable(filter::finish))
+                .filter(chunk -> !chunk.isEmpty())
+                .doOnComplete(() -> cacheAnswer(result, filter.result()));
+    }
+
+    /**
+     * 合并键由模型和完整提示词决定：系统提示、会话历史、用户消息及拼接的知识库上下文都相同时才合并，
+     * 因此只有历史相同（通常是新会话）的相同问题会共用一次生成
+     */
+    private String singleFlightKey(ProcessMessageResult result) {
+        return digest(result.modelId() + "\u0000" + result.options().getMaxTokens(), result.messages());
     }
 
-    // 记录处理结果的数据类
+    /**
+     * 语义缓存的作用域：系统提示和会话历史的摘要，与合并键一样不含用户
+     * 上下文完全相同的问题（通常是新会话）跨用户共享回答，多轮对话中历史不同的追问不会互相命中
+     */
+    private String answerCacheScope(List<Message> history) {
+        return digest("", history);
+    }
+
+    private static String digest(String prefix, List<Message> messages) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+            for (Message message : messages) {
+                digest.update((byte) 0);
+                digest.update(message.getMessageType().name().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(message.getText().getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 命中语义缓存时按固定长度分片回放，保持与模型流式输出相同的SSE协议
+    private Flux<String> replayCachedAnswer(String answer) {
+        int chunkSize = Math.max(1, answerCacheProperties.getReplayChunkSize());
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < answer.length()) {
+            int end = Math.min(answer.length(), start + chunkSize);
+            if (end < answer.length() && Character.isHighSurrogate(answer.charAt(end - 1))) {
+                end++;
+            }
+            chunks.add(answer.substring(start, end));
+            start = end;
+        }
+        return Flux.fromIterable(chunks);
+    }
+
+    // 降级路由的回答缩短了生成长度或跳过了思考过程，不以完整质量的名义缓存；降级请求仍可读取缓存
+    private void cacheAnswer(ProcessMessageResult result, String cleanedResponse) {
+        if (result.degraded()) {
+            return;
+        }
+        answerCacheService.put(result.modelId(), result.cacheScope(), result.retrieval().queryVector(),
+                result.retrieval().documents(), cleanedResponse);
+    }
+
+    // 关键词和检索结果，上下文组装时需要关键词给段落打分
+    private record Retrieval(List<String> keywords, RetrievalResult result) {}
+
+    // 记录处理结果的数据类，cachedAnswer不为null时表示命中语义缓存，degraded表示本次走了降级路由
     private record ProcessMessageResult(
         List<Message> messages,
         ChatOptions options,
         String sessionId,
         String modelId,
-        User currentUser
+        Long userId,
+        RetrievalResult retrieval,
+        String cacheScope,
+        boolean degraded,
+        String cachedAnswer
     ) {}
 
-    private ChatResponse buildChatResponse(String message, String sessionId, String modelId) {
+    // 单个流式请求的进度，取消回调与发送线程可能不同，访问时加锁
+    private static final class StreamState {
+        private final StringBuilder answer = new StringBuilder();
+        private String stage = "retrieval";
+        private ProcessMessageResult result;
+
+        synchronized void waiting(ProcessMessageResult result) {
+            this.result = result;
+            this.stage = "waiting";
+        }
+
+        synchronized void append(String chunk) {
+            stage = "streaming";
+            answer.append(chunk);
+        }
+
+        synchronized String answer() {
+            return answer.toString();
+        }
+    }
+
+    // 序列号在单个响应流内单调递增，前端以消息内容、会话ID和序列号去重
+    private ChatResponse buildChatResponse(String message, String sessionId, String modelId, long sequence) {
         return ChatResponse.builder()
                 .message(message)
                 .sessionId(sessionId)
                 .modelId(modelId)
-                .sequence(UUID.randomUUID().toString())
+                .sequence(Long.toString(sequence))
                 .build();
     }
 
-    private List<KnowledgeBase> searchKnowledgeFromDB(List<String> keywords) {
-        if(keywords == null || keywords.isEmpty()){
-            return Collections.emptyList();
-        }else{
-            return knowledgeBaseMapper.retrieveByKeywords(keywords);
-        }
-    }
-
     private String getOrCreateSessionId(String sessionId) {
         if (sessionId == null || sessionId.isEmpty()) {
             return UUID.randomUUID().toString();
@@ -270,98 +429,108 @@ public class ChatServiceImpl implements ChatService {
         return sessionId;
     }
 
-    private void saveUserMessage(String content, String sessionId, User user) {
+    private void saveUserMessage(String content, String sessionId, Long userId) {
         ChatMessage userMessage = new ChatMessage();
         userMessage.setContent(content);
         userMessage.setRole("user");
         userMessage.setSessionId(sessionId);
-        userMessage.setUserId(user.getId());
-        chatMessageMapper.insert(userMessage);
+        userMessage.setUserId(userId);
+        chatMessageWriter.write(userMessage);
+        chatHistoryWindowService.append(userMessage);
     }
 
-    private void saveAssistantMessage(String content, String sessionId, User user) {
+    private void saveAssistantMessage(String content, String sessionId, Long userId, boolean truncated) {
+        ChatMessage assistantMessage = assistantMessage(content, sessionId, userId, truncated);
+        chatMessageWriter.write(assistantMessage);
+        chatHistoryWindowService.append(assistantMessage);
+    }
+
+    /**
+     * 流式响应的完成和取消回调运行在Reactor/Netty线程上，溢出文件写入和Redis窗口追加都会阻塞，
+     * 因此切换到boundedElastic执行；createdAt在切换前确定，保持与发送顺序一致
+     */
+    private void saveAssistantMessageAsync(String content, String sessionId, Long userId, boolean truncated) {
+        ChatMessage assistantMessage = assistantMessage(content, sessionId, userId, truncated);
+        assistantMessage.setCreatedAt(LocalDateTime.now());
+        Mono.fromRunnable(() -> {
+                    chatMessageWriter.write(assistantMessage);
+                    chatHistoryWindowService.append(assistantMessage);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, error -> log.error("Failed to save assistant message for session {}", sessionId, error));
+    }
+
+    private ChatMessage assistantMessage(String content, String sessionId, Long userId, boolean truncated) {
         ChatMessage assistantMessage = new ChatMessage();
         assistantMessage.setContent(content);
         assistantMessage.setRole("assistant");
         assistantMessage.setSessionId(sessionId);
-        assistantMessage.setUserId(user.getId());
-        chatMessageMapper.insert(assistantMessage);
+        assistantMessage.setUserId(userId);
+        assistantMessage.setTruncated(truncated);
+        return assistantMessage;
     }
 
-    private List<Message> buildMessageContext(String sessionId) {
-        return Mono.fromCallable(() -> {
-            // 获取最近的10条消息
-            List<ChatMessage> history = chatMessageMapper.findLast10BySessionIdAndUserIdOrderByCreatedAtDesc(sessionId, getCurrentUser().getId());
-            // 反转列表以保持时间顺序
-            Collections.reverse(history);
-
-            // 构建对话上下文
-            List<Message> messages = new ArrayList<>();
-            
-            String systemPrompt = """
-                你是一个智能助手，名字叫强哥。请严格遵守以下规则：
-                1.**输出要求**：所有回答（包括流式输出）必须直接给出最终答案，完全省略思考过程、推理步骤或解释性文字。
-                2.**知识库优先级**：当用户提供本地知识库内容（通过UserMessage传递）时，必须优先分析知识库内容并结合自身知识库给出回答。
-            """;
-            messages.add(new SystemMessage(systemPrompt));
-            // 添加历史消息
-            for (ChatMessage msg : history) {
-                if ("user".equals(msg.getRole())) {
-                    messages.add(new UserMessage(msg.getContent()));
-                } else {
-                    messages.add(new AssistantMessage(msg.getContent()));
-                }
-            }
-
-            return messages;
-        }).subscribeOn(elasticScheduler).block();  // Execute blocking DB operation on elastic thread pool
-    }
+    // 调用方已经运行在elastic线程池上
+    private List<Message> buildMessageContext(String sessionId, Long userId) {
+        // 从Redis会话窗口获取最近的消息（已按时间正序），窗口不存在时才查询数据库
+        List<ChatMessage> history = chatHistoryWindowService.getRecentMessages(sessionId, userId);
 
-    private String cleanAiResponse(String response) {
-        if (response == null) {
-            return "";
-        }
-        
-        // 1. 移除think块及其之前的所有内容
-        String cleaned = response.replaceAll("(?s).*?</think>\\s*", "");
+        // 构建对话上下文
+        List<Message> messages = new ArrayList<>();
         
-        // 2. 移除其他HTML标签
-        cleaned = cleaned.replaceAll("<[^>]+>", "");
-        
-        // 3. 清理空白字符
-        cleaned = cleaned.replaceAll("\\s+", " ").trim();
-        
-        return cleaned;
+        String systemPrompt = """
+            你是一个智能助手，名字叫强哥。请严格遵守以下规则：
+            1.**输出要求**：所有回答（包括流式输出）必须直接给出最终答案，完全省略思考过程、推理步骤或解释性文字。
+            2.**知识库优先级**：当用户提供本地知识库内容（通过UserMessage传递）时，必须优先分析知识库内容并结合自身知识库给出回答。
+        """;
+        messages.add(new SystemMessage(systemPrompt));
+        // 添加历史消息
+        for (ChatMessage msg : history) {
+            if ("user".equals(msg.getRole())) {
+                messages.add(new UserMessage(msg.getContent()));
+            } else {
+                messages.add(new AssistantMessage(msg.getContent()));
+            }
+        }
+
+        return messages;
     }
 
     @Override
     public List<ChatResponse> getHistory(String sessionId) {
-        User currentUser = getCurrentUser();
-        List<ChatMessage> messages = chatMessageMapper.findBySessionIdAndUserIdOrderByCreatedAtAsc(sessionId, currentUser.getId());
+        Long userId = getCurrentUserId();
+        // 先取尚未落库的消息再查数据库，查询期间落库的消息会同时出现在两边，按内容去重
+        List<ChatMessage> pending = chatMessageWriter.pendingMessages(sessionId, userId);
+        List<ChatMessage> messages = ChatMessageMerger.merge(
+                chatMessageMapper.findBySessionIdAndUserIdOrderByCreatedAtAsc(sessionId, userId), pending);
         return messages.stream()
                 .map(msg -> ChatResponse.builder()
                         .message(msg.getContent())
                         .sessionId(msg.getSessionId())
                         .role(msg.getRole())
+                        .truncated(msg.isTruncated())
                         .build())
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<String> getAllSessions() {
-        User currentUser = getCurrentUser();
-        return chatMessageMapper.findDistinctSessionIdByUserId(currentUser.getId());
+        Long userId = getCurrentUserId();
+        return chatMessageMapper.findDistinctSessionIdByUserId(userId);
     }
 
     @Override
     @Transactional
     public void deleteSession(String sessionId) {
-        User currentUser = getCurrentUser();
+        Long userId = getCurrentUserId();
         String lockKey = "chat:delete:" + sessionId;
         String lockValue = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
         try {
             if (lockValue != null) {
-                chatMessageMapper.deleteBySessionIdAndUserId(sessionId, currentUser.getId());
+                // 先丢弃尚未落库的消息，避免删除后又被异步写入
+                chatMessageWriter.discardSession(sessionId, userId);
+                chatMessageMapper.deleteBySessionIdAndUserId(sessionId, userId);
+                chatHistoryWindowService.evict(sessionId, userId);
             }
         } finally {
             if (lockValue != null) {
@@ -0,0 +1,207 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.example.chatbot.service.EmbeddingCacheService;
+import com.example.chatbot.util.VectorCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 文本向量的两级缓存
+ * 缓存键由模型名称、向量维度和规范化文本的SHA-256组成，切换模型或维度后旧条目不会再被命中。
+ * 本地LRU保存float[]，Redis中保存小端float32字节，1024维向量只占4KB；
+ * Redis命中的条目回填本地缓存，Redis不可用时只使用本地缓存。
+ * 调用方不能修改返回的数组，本地缓存与调用方共享同一个实例。
+ */
+@Slf4j
+@Service
+public class EmbeddingCacheServiceImpl implements EmbeddingCacheService {
+    private static final String KEY_PREFIX = "embedding:";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final EmbeddingProperties properties;
+    // accessOrder为true时LinkedHashMap按访问顺序排列，超出容量时淘汰最久未访问的条目
+    private final Map<String, float[]> local;
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+
+    public EmbeddingCacheServiceImpl(RedisTemplate<String, Object> redisTemplate, EmbeddingProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        int maxEntries = properties.getCache().getLocalMaxEntries();
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.localHits = lookupCounter(meterRegistry, "local_hit");
+        this.redisHits = lookupCounter(meterRegistry, "redis_hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        Gauge.builder("embedding.cache.hit.ratio", this, EmbeddingCacheServiceImpl::hitRatio)
+                .description("向量缓存命中率（本地和Redis命中之和）")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public float[] get(String text) {
+        return getAll(List.of(text)).get(0);
+    }
+
+    @Override
+    public List<float[]> getAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        if (!properties.getCache().isEnabled() || texts.isEmpty()) {
+            return vectors;
+        }
+        List<String> keys = texts.stream().map(this::key).toList();
+        List<Integer> missing = new ArrayList<>();
+        synchronized (local) {
+            for (int i = 0; i < keys.size(); i++) {
+                float[] vector = local.get(keys.get(i));
+                if (vector != null) {
+                    vectors.set(i, vector);
+                } else {
+                    missing.add(i);
+                }
+            }
+        }
+        localHits.increment(texts.size() - missing.size());
+
+        int found = 0;
+        if (!missing.isEmpty() && properties.getCache().isRedisEnabled()) {
+            List<float[]> cached = readRedis(missing.stream().map(keys::get).toList());
+            for (int i = 0; i < missing.size(); i++) {
+                float[] vector = cached.get(i);
+                if (vector != null) {
+                    int index = missing.get(i);
+                    vectors.set(index, vector);
+                    putLocal(keys.get(index), vector);
+                    found++;
+                }
+            }
+        }
+        redisHits.increment(found);
+        misses.increment(missing.size() - found);
+        return vectors;
+    }
+
+    @Override
+    public void put(String text, float[] vector) {
+        putAll(List.of(text), Collections.singletonList(vector));
+    }
+
+    @Override
+    public void putAll(List<String> texts, List<float[]> vectors) {
+        if (!properties.getCache().isEnabled()) {
+            return;
+        }
+        Map<String, float[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = vectors.get(i);
+            // 维度与配置不一致说明模型和配置不匹配，不缓存这类向量
+            if (vector != null && vector.length == properties.getVectorDim()) {
+                entries.put(key(texts.get(i)), vector);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        entries.forEach(this::putLocal);
+
+        if (properties.getCache().isRedisEnabled()) {
+            Expiration ttl = Expiration.seconds(properties.getCache().getRedisTtlSeconds());
+            try {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    entries.forEach((key, vector) -> connection.stringCommands().set(
+                            key.getBytes(StandardCharsets.UTF_8), VectorCodec.toBytes(vector),
+                            ttl, RedisStringCommands.SetOption.upsert()));
+                    return null;
+                });
+            } catch (Exception e) {
+                log.warn("Failed to write {} embeddings to Redis", entries.size(), e);
+            }
+        }
+    }
+
+    private List<float[]> readRedis(List<String> keys) {
+        List<float[]> vectors = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        try {
+            byte[][] rawKeys = keys.stream().map(key -> key.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+            List<byte[]> values = redisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+            if (values == null) {
+                return vectors;
+            }
+            for (int i = 0; i < values.size(); i++) {
+                byte[] value = values.get(i);
+                if (value != null && value.length == properties.getVectorDim() * Float.BYTES) {
+                    vectors.set(i, VectorCodec.fromBytes(value));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read embeddings from Redis, treating as cache miss", e);
+        }
+        return vectors;
+    }
+
+    private void putLocal(String key, float[] vector) {
+        synchronized (local) {
+            local.put(key, vector);
+        }
+    }
+
+    /**
+     * 规范化后内容相同的文本共用同一个缓存键：Unicode NFKC（统一全角半角），去掉首尾空白并合并连续空白
+     */
+    String key(String text) {
+        String normalized = WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFKC).strip()).replaceAll(" ");
+        String model = properties.getModel();
+        int dim = properties.getVectorDim();
+        return KEY_PREFIX + model + ":" + dim + ":" + sha256(model + "\u0000" + dim + "\u0000" + normalized);
+    }
+
+    private double hitRatio() {
+        double hits = localHits.count() + redisHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("embedding.cache.lookups")
+                .description("向量缓存查找次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.service.EmbeddingCacheService;
+import com.example.chatbot.service.EmbeddingService;
+import com.example.chatbot.util.EmbeddingClient;
+import com.example.chatbot.util.MicroBatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 调用Python向量化服务
+ * 批量导入时把文本按batchSize分批提交给/embed_batch，最多batchParallelism个批次同时在途；
+ * 一个批次失败时只记录该批次的文本，重试时逐条提交失败的文本，已成功的文本不会重复向量化，
+ * 始终失败的文本也不会连累同批的其他文本。
+ * 在线查询的单条请求经过微批合并，并发到达的查询在几毫秒的窗口内合并为一次批量调用；
+ * 等待合并结果不超过检索截止时间，合并的批次失败时单独请求一次，避免被同批的其他文本连累。
+ * 两条路径都先查向量缓存，只有未命中的文本才会调用向量化服务。
+ */
+@Slf4j
+@Service
+public class EmbeddingServiceImpl implements EmbeddingService {
+    private final EmbeddingProperties properties;
+    private final RetrievalProperties retrievalProperties;
+    private final Scheduler elasticScheduler;
+    private final EmbeddingCacheService embeddingCache;
+    private final EmbeddingClient embeddingClient;
+    private final MicroBatcher<String, float[]> queryBatcher;
+
+    public EmbeddingServiceImpl(EmbeddingProperties properties, RetrievalProperties retrievalProperties,
+                                Scheduler elasticScheduler, EmbeddingCacheService embeddingCache,
+                                EmbeddingClient embeddingClient, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.retrievalProperties = retrievalProperties;
+        this.elasticScheduler = elasticScheduler;
+        this.embeddingCache = embeddingCache;
+        this.embeddingClient = embeddingClient;
+        this.queryBatcher = new MicroBatcher<>("embedding-query",
+                properties.getQueryMaxBatchSize(), properties.getQueryBatchWindowMs(),
+                texts -> embeddingClient.embedBatch(texts, properties.getReadTimeoutMs()),
+                Schedulers.parallel(), elasticScheduler, meterRegistry);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = embeddingCache.get(text);
+        if (vector == null) {
+            vector = request(text);
+            embeddingCache.put(text, vector);
+        }
+        return vector;
+    }
+
+    private float[] request(String text) {
+        if (!properties.isQueryBatchEnabled()) {
+            return requestSingle(text);
+        }
+        CompletableFuture<float[]> future = queryBatcher.submit(text);
+        long timeoutMs = retrievalProperties.getDeadlineMs();
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // 批次失败或被线程池拒绝，原因可能在同批的其他文本上，单独请求一次
+            log.debug("Embedding micro batch failed, requesting text alone: {}", e.getCause().getMessage());
+            return requestSingle(text);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new RuntimeException("Timed out waiting for embedding after " + timeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for embedding", e);
+        }
+    }
+
+    private float[] requestSingle(String text) {
+        try {
+            return embeddingClient.embed(text);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to generate embedding", e);
+        }
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        float[][] vectors = embeddingCache.getAll(texts).toArray(float[][]::new);
+        List<Integer> pending = new ArrayList<>(texts.size());
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] == null) {
+                pending.add(i);
+            }
+        }
+        List<Integer> requested = List.copyOf(pending);
+
+        for (int attempt = 0; attempt <= properties.getMaxRetries() && !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                log.warn("Retrying embedding for {} failed texts, round {}", pending.size(), attempt);
+            }
+            // 重试轮逐条提交，区分出真正失败的文本
+            int batchSize = attempt == 0 ? Math.max(1, properties.getBatchSize()) : 1;
+            List<List<Integer>> batches = partition(pending, batchSize);
+            // 每个批次各自写入不同的下标，完成后统一收集失败的下标进入下一轮
+            List<Integer> failed = Flux.fromIterable(batches)
+                    .flatMap(batch -> Mono.fromCallable(() -> embedBatch(batch, texts, vectors))
+                                    .subscribeOn(elasticScheduler)
+                                    .onErrorResume(e -> {
+                                        log.warn("Embedding batch of {} texts failed: {}", batch.size(), e.getMessage());
+                                        return Mono.just(batch);
+                                    }),
+                            Math.max(1, properties.getBatchParallelism()))
+                    .flatMapIterable(batch -> batch)
+                    .collectList()
+                    .block();
+            pending = failed == null ? List.of() : failed;
+        }
+
+        if (!pending.isEmpty()) {
+            log.error("Failed to embed {} of {} texts after {} retries",
+                    pending.size(), texts.size(), properties.getMaxRetries());
+        }
+        embeddingCache.putAll(requested.stream().map(texts::get).toList(),
+                requested.stream().map(i -> vectors[i]).toList());
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * 提交一个批次，成功时写入对应下标并返回空列表
+     */
+    private List<Integer> embedBatch(List<Integer> batch, List<String> texts, float[][] vectors) {
+        List<float[]> embeddings = embeddingClient.embedBatch(batch.stream().map(texts::get).toList());
+        for (int i = 0; i < batch.size(); i++) {
+            vectors[batch.get(i)] = embeddings.get(i);
+        }
+        return List.of();
+    }
+
+    private static List<List<Integer>> partition(List<Integer> indices, int size) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int i = 0; i < indices.size(); i += size) {
+            batches.add(indices.subList(i, Math.min(i + size, indices.size())));
+        }
+        return batches;
+    }
+}
@@ -36,17 +36,9 @@ public class KnowledgeImportConsumer {
             
             log.info("开始处理批量导入请求，共 {} 条数据", knowledgeList.size());
             
-            // 遍历知识列表，逐条保存到数据库
-            for (KnowledgeBase knowledge : knowledgeList) {
-                try {
-                    knowledgeService.addKnowledge(knowledge);
-                    log.debug("成功导入知识: {}", knowledge.getTitle());
-                } catch (Exception e) {
-                    // 单条数据导入失败，记录错误但继续处理其他数据
-                    log.error("导入知识失败: {}, 错误: {}", knowledge.getTitle(), e.getMessage());
-                }
-            }
-            log.info("批量导入处理完成");
+            // 逐条保存到数据库后整批生成向量，单条数据导入失败不影响其他数据
+            int imported = knowledgeService.importKnowledge(knowledgeList);
+            log.info("批量导入处理完成，成功 {} 条", imported);
         } catch (Exception e) {
             // 整个批处理过程发生错误
             log.error("批量导入处理失败", e);
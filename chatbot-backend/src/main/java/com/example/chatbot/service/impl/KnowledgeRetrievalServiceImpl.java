@@ -0,0 +1,201 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.dto.RetrievalResult;
+import com.example.chatbot.dto.ScoredDocument;
+import com.example.chatbot.dto.RetrievalResult.Tier;
+import com.example.chatbot.dto.RetrievalResult.TierReport;
+import com.example.chatbot.dto.RetrievalResult.TierStatus;
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.service.KnowledgeRetrievalService;
+import com.example.chatbot.service.RedisService;
+import com.example.chatbot.service.VectorSearchService;
+import com.example.chatbot.util.RankFusion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeRetrievalServiceImpl implements KnowledgeRetrievalService {
+    private final RedisService redisService;
+    private final VectorSearchService vectorSearchService;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final RetrievalProperties retrievalProperties;
+    private final Scheduler retrievalScheduler;
+
+    @Override
+    public RetrievalResult retrieve(String query, List<String> keywords) {
+        return retrieveAsync(query, keywords).block();
+    }
+
+    @Override
+    public Mono<RetrievalResult> retrieveAsync(String query, List<String> keywords) {
+        return Mono.defer(() -> startRetrieval(query, keywords));
+    }
+
+    private Mono<RetrievalResult> startRetrieval(String query, List<String> keywords) {
+        int minResults = retrievalProperties.getMinRequiredResults();
+        Duration deadline = Duration.ofMillis(retrievalProperties.getDeadlineMs());
+        long start = System.nanoTime();
+
+        // Redis命中数量足够时通知数据库检索层提前结束；两者都是关键词检索，结果高度重合。
+        // 向量检索层不提前结束，融合排序需要语义排名，否则Redis的关键词排名会直接决定结果
+        Sinks.One<Boolean> redisSufficient = Sinks.one();
+
+        // 查询向量单独计算并缓存，即使向量检索被取消，语义缓存仍然可以复用该向量
+        Mono<float[]> queryVector = Mono.fromCallable(() -> vectorSearchService.embedQuery(query))
+                .subscribeOn(retrievalScheduler)
+                .timeout(deadline)
+                .cache();
+
+        Mono<TierOutcome> redisTier = runTier(Tier.REDIS,
+                        blocking(() -> rankByKeywords(redisService.searchKnowledge(keywords), keywords)), deadline, start)
+                .doOnNext(outcome -> {
+                    if (outcome.documents().size() >= minResults) {
+                        redisSufficient.tryEmitValue(Boolean.TRUE);
+                    }
+                });
+        Mono<TierOutcome> vectorTier = runTier(Tier.VECTOR, queryVector.flatMap(vector ->
+                        blocking(() -> vectorSearchService.searchSimilarScored(vector,
+                                Math.max(minResults, retrievalProperties.getTopK())))), deadline, start);
+        Mono<TierOutcome> databaseTier = runTier(Tier.DATABASE,
+                        blocking(() -> rankByKeywords(searchKnowledgeFromDB(keywords), keywords)), deadline, start)
+                .takeUntilOther(redisSufficient.asMono())
+                .switchIfEmpty(Mono.fromSupplier(() -> TierOutcome.cancelled(Tier.DATABASE, start)));
+
+        Mono<Optional<float[]>> vectorOutcome = queryVector
+                .map(Optional::of)
+                .onErrorReturn(Optional.empty())
+                .defaultIfEmpty(Optional.empty());
+
+        // 三层同时启动，每层都受同一截止时间约束，因此整体等待不会超过截止时间太多；
+        // 取消订阅时尚未完成的检索层一并取消。整体超时只是兜底，触发时按所有层超时处理，返回空结果而不是抛出
+        return Mono.zip(redisTier, vectorTier, databaseTier, vectorOutcome)
+                .timeout(deadline.plusMillis(200))
+                .map(tuple -> {
+                    List<TierOutcome> outcomes = List.of(tuple.getT1(), tuple.getT2(), tuple.getT3());
+                    List<KnowledgeBase> documents = fuseResults(outcomes);
+                    List<TierReport> reports = outcomes.stream().map(TierOutcome::report).toList();
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    log.debug("Retrieval finished in {} ms with {} documents, tiers: {}", elapsed, documents.size(), reports);
+                    return new RetrievalResult(documents, reports, elapsed, tuple.getT4().orElse(null));
+                })
+                .onErrorResume(TimeoutException.class, e -> {
+                    log.warn("Retrieval exceeded deadline of {} ms, continuing without documents", deadline.toMillis());
+                    List<TierReport> reports = List.of(Tier.REDIS, Tier.VECTOR, Tier.DATABASE).stream()
+                            .map(tier -> tierReport(tier, TierStatus.TIMED_OUT, start, 0))
+                            .toList();
+                    return Mono.just(new RetrievalResult(List.of(), reports,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), null));
+                });
+    }
+
+    /**
+     * 在检索线程池上执行单个检索层，超时和异常都转换为对应的状态而不是向上抛出
+     */
+    private Mono<TierOutcome> runTier(Tier tier, Mono<List<ScoredDocument>> search, Duration deadline, long start) {
+        return search
+                .defaultIfEmpty(List.of())
+                .timeout(deadline)
+                .map(docs -> new TierOutcome(tierReport(tier, TierStatus.COMPLETED, start, docs.size()), docs))
+                .onErrorResume(TimeoutException.class, e -> {
+                    log.warn("Retrieval tier {} exceeded deadline of {} ms", tier, deadline.toMillis());
+                    return Mono.just(new TierOutcome(tierReport(tier, TierStatus.TIMED_OUT, start, 0), List.of()));
+                })
+                .onErrorResume(e -> {
+                    log.warn("Retrieval tier {} failed", tier, e);
+                    return Mono.just(new TierOutcome(tierReport(tier, TierStatus.FAILED, start, 0), List.of()));
+                });
+    }
+
+    /**
+     * 检索层超时或被取消时只是不再等待结果，已经开始的阻塞调用不会被中断，
+     * 会继续占用检索线程直到Redis、Milvus或数据库调用返回，各客户端自身的超时决定占用上限。
+     * 不使用中断：中断持有连接的线程可能导致连接池中的连接被丢弃。
+     */
+    private Mono<List<ScoredDocument>> blocking(Callable<List<ScoredDocument>> search) {
+        return Mono.fromCallable(search).subscribeOn(retrievalScheduler);
+    }
+
+    /**
+     * 各检索层结果按加权倒数排名融合，按文档ID去重后保留前topK篇。
+     * 融合分数相同时按Redis、向量、数据库的顺序优先。
+     */
+    private List<KnowledgeBase> fuseResults(List<TierOutcome> outcomes) {
+        List<RankFusion.Ranking> rankings = new ArrayList<>(outcomes.size());
+        for (TierOutcome outcome : outcomes) {
+            rankings.add(new RankFusion.Ranking(weight(outcome.report().tier()), outcome.documents()));
+        }
+        List<ScoredDocument> fused = RankFusion.fuse(rankings, retrievalProperties.getRrfK(), retrievalProperties.getTopK());
+        log.debug("Fused retrieval ranking: {}", fused.stream()
+                .map(scored -> scored.document().getId() + "=" + String.format(Locale.ROOT, "%.4f", scored.score()))
+                .toList());
+        return fused.stream().map(ScoredDocument::document).toList();
+    }
+
+    private double weight(Tier tier) {
+        return switch (tier) {
+            case REDIS -> retrievalProperties.getRedisWeight();
+            case VECTOR -> retrievalProperties.getVectorWeight();
+            case DATABASE -> retrievalProperties.getDatabaseWeight();
+        };
+    }
+
+    /**
+     * 关键词检索层按命中的关键词数排序，标题命中计两次；命中数相同时保持原有顺序
+     */
+    private List<ScoredDocument> rankByKeywords(List<KnowledgeBase> documents, List<String> keywords) {
+        List<ScoredDocument> ranked = new ArrayList<>(documents.size());
+        for (KnowledgeBase doc : documents) {
+            String title = doc.getTitle() == null ? "" : doc.getTitle().toLowerCase(Locale.ROOT);
+            String content = doc.getContent() == null ? "" : doc.getContent().toLowerCase(Locale.ROOT);
+            int hits = 0;
+            for (String keyword : keywords) {
+                String term = keyword.toLowerCase(Locale.ROOT);
+                if (title.contains(term)) {
+                    hits += 2;
+                }
+                if (content.contains(term)) {
+                    hits++;
+                }
+            }
+            ranked.add(new ScoredDocument(doc, hits));
+        }
+        ranked.sort(Comparator.comparingDouble(ScoredDocument::score).reversed());
+        return ranked;
+    }
+
+    private List<KnowledgeBase> searchKnowledgeFromDB(List<String> keywords) {
+        if (keywords == null || keywords.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return knowledgeBaseMapper.retrieveByKeywords(keywords);
+    }
+
+    private static TierReport tierReport(Tier tier, TierStatus status, long start, int count) {
+        return new TierReport(tier, status, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), count);
+    }
+
+    private record TierOutcome(TierReport report, List<ScoredDocument> documents) {
+        static TierOutcome cancelled(Tier tier, long start) {
+            return new TierOutcome(tierReport(tier, TierStatus.CANCELLED, start, 0), List.of());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.example.chatbot.config.RabbitMQConfig;
 import com.example.chatbot.dto.PageResponse;
 import com.example.chatbot.entity.KnowledgeBase;
 import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.service.AnswerCacheService;
 import com.example.chatbot.service.KnowledgeService;
 import com.example.chatbot.service.RedisDistributedLock;
 import com.example.chatbot.service.RedisService;
@@ -16,6 +17,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -28,6 +30,7 @@ public class KnowledgeServiceImpl implements KnowledgeService {
     private final VectorSearchService vectorSearchService;
     private final RedisService redisService;
     private final RedisDistributedLock distributedLock;
+    private final AnswerCacheService answerCacheService;
     private static final String KNOWLEDGE_DATA_KEY = "knowledge_data:";
     
     @Value("${spring.rabbitmq.queue.batch-size:10}")
@@ -113,6 +116,8 @@ public class KnowledgeServiceImpl implements KnowledgeService {
                 knowledgeBaseMapper.updateById(knowledge);
                 // 更新向量索引
                 vectorSearchService.updateDocument(knowledge);
+                // 引用该文档的语义缓存回答失效
+                answerCacheService.invalidateDocument(id);
                 // 更新Redis缓存
                 boolean inRedis = redisService.getRedisTemplate().hasKey(KNOWLEDGE_DATA_KEY + knowledge.getId());
                 if(inRedis){
@@ -143,6 +148,8 @@ public class KnowledgeServiceImpl implements KnowledgeService {
                 vectorSearchService.deleteDocument(id);
                 // 从Redis缓存中删除
                 redisService.deleteKnowledge(id);
+                // 引用该文档的语义缓存回答失效
+                answerCacheService.invalidateDocument(id);
             } else {
                 throw new RuntimeException("Operation failed");
             }
@@ -153,6 +160,23 @@ public class KnowledgeServiceImpl implements KnowledgeService {
         }
     }
 
+    @Override
+    @Transactional
+    public int deleteKnowledgeBatch(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int deleted = knowledgeBaseMapper.deleteByIds(ids);
+        // 删除幂等，不存在的ID同样可以删除向量，整批一次提交
+        vectorSearchService.deleteDocuments(ids);
+        for (Long id : ids) {
+            redisService.deleteKnowledge(id);
+            answerCacheService.invalidateDocument(id);
+        }
+        log.info("Deleted {} of {} knowledge base entries", deleted, ids.size());
+        return deleted;
+    }
+
     @Override
     @Transactional
     public void batchImport(List<KnowledgeBase> knowledgeList) {
@@ -170,6 +194,37 @@ public class KnowledgeServiceImpl implements KnowledgeService {
         }
     }
 
+    @Override
+    public int importKnowledge(List<KnowledgeBase> knowledgeList) {
+        List<KnowledgeBase> saved = new ArrayList<>(knowledgeList.size());
+        for (KnowledgeBase knowledge : knowledgeList) {
+            try {
+                knowledgeBaseMapper.insert(knowledge);
+                saved.add(knowledge);
+            } catch (Exception e) {
+                log.error("导入知识失败: {}, 错误: {}", knowledge.getTitle(), e.getMessage());
+            }
+        }
+        if (saved.isEmpty()) {
+            return 0;
+        }
+        // 整批向量化；重试后仍失败的条目从数据库删除，与逐条导入时索引失败回滚的结果一致
+        List<Long> failedIds;
+        try {
+            failedIds = vectorSearchService.indexDocuments(saved);
+        } catch (RuntimeException e) {
+            // 向量库不可用时整批撤销，避免数据库中留下没有向量的知识
+            knowledgeBaseMapper.deleteByIds(saved.stream().map(KnowledgeBase::getId).toList());
+            log.error("{} 条知识向量化异常，已撤销导入", saved.size(), e);
+            throw e;
+        }
+        if (!failedIds.isEmpty()) {
+            knowledgeBaseMapper.deleteByIds(failedIds);
+            log.error("{} 条知识向量化失败，已撤销导入: {}", failedIds.size(), failedIds);
+        }
+        return saved.size() - failedIds.size();
+    }
+
     @Override
     public List<KnowledgeBase> findAllData() {
         log.info("获取所有知识库数据");
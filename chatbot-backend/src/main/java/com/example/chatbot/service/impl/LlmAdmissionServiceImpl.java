@@ -0,0 +1,242 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.exception.ModelOverloadedException;
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.service.LlmAdmissionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 按模型限制并发的准入控制
+ * 每个模型维护一个许可计数和按用户分组的等待队列，释放许可时在有等待请求的用户之间轮转，
+ * 同一用户的请求按到达顺序执行。队列已满立即拒绝，排队超过最长等待时间同样拒绝。
+ */
+@Slf4j
+@Service
+public class LlmAdmissionServiceImpl implements LlmAdmissionService {
+    private final ModelProperties modelProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelQueue> queues = new ConcurrentHashMap<>();
+
+    public LlmAdmissionServiceImpl(ModelProperties modelProperties, MeterRegistry meterRegistry) {
+        this.modelProperties = modelProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void checkCapacity(String modelId) {
+        ModelQueue queue = queue(modelId);
+        synchronized (queue) {
+            if (queue.active >= queue.maxConcurrency && queue.queued >= queue.maxQueueSize) {
+                throw queue.reject("queue_full");
+            }
+        }
+    }
+
+    @Override
+    public int pendingCount(String modelId) {
+        ModelQueue queue = queue(modelId);
+        synchronized (queue) {
+            return queue.active + queue.queued;
+        }
+    }
+
+    @Override
+    public <T> Flux<T> admit(String modelId, Long userId, Supplier<Flux<T>> generation) {
+        ModelQueue queue = queue(modelId);
+        return Flux.usingWhen(
+                acquire(queue, userId),
+                permit -> generation.get(),
+                permit -> Mono.fromRunnable(permit::release),
+                (permit, error) -> Mono.fromRunnable(permit::release),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    @Override
+    public <T> T admitBlocking(String modelId, Long userId, Supplier<T> generation) {
+        Permit permit = acquire(queue(modelId), userId).block();
+        try {
+            return generation.get();
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+
+    private Mono<Permit> acquire(ModelQueue queue, Long userId) {
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter = new Waiter(userId, sink, System.nanoTime());
+                    Permit granted = null;
+                    synchronized (queue) {
+                        if (queue.active < queue.maxConcurrency && queue.queued == 0) {
+                            queue.active++;
+                            granted = new Permit(queue);
+                        } else if (queue.queued >= queue.maxQueueSize) {
+                            sink.error(queue.reject("queue_full"));
+                            return;
+                        } else {
+                            queue.enqueue(waiter);
+                        }
+                    }
+                    if (granted != null) {
+                        queue.waitTimer.record(0, TimeUnit.NANOSECONDS);
+                        sink.success(granted);
+                        return;
+                    }
+                    sink.onCancel(() -> queue.cancel(waiter));
+                })
+                .timeout(Duration.ofMillis(queue.maxQueueWaitMs),
+                        Mono.error(() -> queue.reject("wait_timeout")));
+    }
+
+    private ModelQueue queue(String modelId) {
+        return queues.computeIfAbsent(modelId, id -> {
+            ModelProperties.ModelOption option = modelProperties.getOptions().get(id);
+            if (option == null) {
+                throw new IllegalArgumentException("Invalid model ID: " + id);
+            }
+            return new ModelQueue(id, option);
+        });
+    }
+
+    private final class ModelQueue {
+        private final String modelId;
+        private final int maxConcurrency;
+        private final int maxQueueSize;
+        private final long maxQueueWaitMs;
+        // 用户ID -> 该用户的等待请求，LinkedHashMap的顺序即轮转顺序
+        private final LinkedHashMap<Long, ArrayDeque<Waiter>> waitingByUser = new LinkedHashMap<>();
+        private final Timer waitTimer;
+        private int active;
+        private int queued;
+
+        ModelQueue(String modelId, ModelProperties.ModelOption option) {
+            this.modelId = modelId;
+            this.maxConcurrency = Math.max(1, option.getMaxConcurrency());
+            this.maxQueueSize = Math.max(0, option.getMaxQueueSize());
+            this.maxQueueWaitMs = option.getMaxQueueWaitMs();
+            this.waitTimer = Timer.builder("llm.admission.wait")
+                    .description("获得模型执行许可前的排队时间")
+                    .tag("model", modelId)
+                    .register(meterRegistry);
+            Gauge.builder("llm.admission.queue.depth", this, q -> q.queued)
+                    .description("等待模型执行许可的请求数")
+                    .tag("model", modelId)
+                    .register(meterRegistry);
+            Gauge.builder("llm.admission.active", this, q -> q.active)
+                    .description("正在执行的模型生成数")
+                    .tag("model", modelId)
+                    .register(meterRegistry);
+        }
+
+        // 调用方需持有this的锁
+        void enqueue(Waiter waiter) {
+            waitingByUser.computeIfAbsent(waiter.userId, id -> new ArrayDeque<>()).addLast(waiter);
+            queued++;
+        }
+
+        void cancel(Waiter waiter) {
+            Permit orphan;
+            synchronized (this) {
+                orphan = waiter.permit;
+                if (orphan == null) {
+                    ArrayDeque<Waiter> waiters = waitingByUser.get(waiter.userId);
+                    if (waiters != null && waiters.remove(waiter)) {
+                        queued--;
+                        if (waiters.isEmpty()) {
+                            waitingByUser.remove(waiter.userId);
+                        }
+                    }
+                    return;
+                }
+            }
+            // 许可已转交但请求同时被取消（例如恰好排队超时），许可不会再被使用，需要释放
+            orphan.release();
+        }
+
+        void release() {
+            Waiter next;
+            synchronized (this) {
+                next = pollNext();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+                // 许可直接转交给下一个等待的请求，active不变
+                next.permit = new Permit(this);
+            }
+            waitTimer.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+            next.sink.success(next.permit);
+        }
+
+        // 调用方需持有this的锁；取出轮转顺序中第一个用户的最早请求，并把该用户移到队尾
+        private Waiter pollNext() {
+            var iterator = waitingByUser.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Map.Entry<Long, ArrayDeque<Waiter>> entry = iterator.next();
+            iterator.remove();
+            Waiter waiter = entry.getValue().pollFirst();
+            if (!entry.getValue().isEmpty()) {
+                waitingByUser.put(entry.getKey(), entry.getValue());
+            }
+            queued--;
+            return waiter;
+        }
+
+        ModelOverloadedException reject(String reason) {
+            meterRegistry.counter("llm.admission.rejected", "model", modelId, "reason", reason).increment();
+            log.warn("Rejected request for model {}: {} (active={}, queued={})", modelId, reason, active, queued);
+            return new ModelOverloadedException(modelId, Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxQueueWaitMs)));
+        }
+    }
+
+    private static final class Waiter {
+        private final Long userId;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt;
+        // 转交给该请求的许可，由ModelQueue的锁保护
+        private Permit permit;
+
+        Waiter(Long userId, MonoSink<Permit> sink, long enqueuedAt) {
+            this.userId = userId;
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * 执行许可，重复释放只生效一次
+     */
+    private static final class Permit {
+        private final ModelQueue queue;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(ModelQueue queue) {
+            this.queue = queue;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                queue.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.dto.ModelRoute;
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.properties.ModelRoutingProperties;
+import com.example.chatbot.service.LlmAdmissionService;
+import com.example.chatbot.service.ModelRouter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于延迟SLO的模型路由
+ * 为每个模型维护首字延迟、生成速度（token/s）和单次生成耗时的指数移动平均，
+ * 预计首字延迟 = 排队等待估计 + 平均首字延迟，排队等待按前面的请求数和平均生成耗时估算。
+ * 首字延迟只在有请求时更新，超出SLO的模型不再被选中就没有新样本，因此平均首字延迟按距上次样本的时间衰减，
+ * 预计值逐渐回落到排队等待估计，模型在负载下降后重新被选中。
+ * 请求的模型预计超出SLO时依次尝试配置的备选模型；都无法满足时选择预计延迟最低的模型，
+ * 并降低最大生成长度、对支持的模型关闭思考过程。
+ */
+@Slf4j
+@Service
+public class ModelRouterImpl implements ModelRouter {
+    private static final String DEFAULT_MODEL = "qwen3";
+
+    private final ModelProperties modelProperties;
+    private final ModelRoutingProperties properties;
+    private final LlmAdmissionService llmAdmissionService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+    // 衰减使用的时钟（纳秒），测试中替换
+    LongSupplier clock = System::nanoTime;
+
+    public ModelRouterImpl(ModelProperties modelProperties,
+                           ModelRoutingProperties properties,
+                           LlmAdmissionService llmAdmissionService,
+                           MeterRegistry meterRegistry) {
+        this.modelProperties = modelProperties;
+        this.properties = properties;
+        this.llmAdmissionService = llmAdmissionService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ModelRoute route(String requestedModelId) {
+        String requested = requestedModelId != null ? requestedModelId : DEFAULT_MODEL;
+        if (!properties.isEnabled() || !modelProperties.getOptions().containsKey(requested)) {
+            return ModelRoute.direct(requested);
+        }
+
+        List<String> candidates = new ArrayList<>();
+        candidates.add(requested);
+        candidates.addAll(properties.getFallbacks().getOrDefault(requested, List.of()));
+
+        String best = requested;
+        double bestEstimate = Double.MAX_VALUE;
+        for (String candidate : candidates) {
+            if (!modelProperties.getOptions().containsKey(candidate)) {
+                continue;
+            }
+            double estimate = estimateTtftMs(candidate);
+            if (estimate <= properties.getTtftSloMs()) {
+                return candidate.equals(requested)
+                        ? ModelRoute.direct(requested)
+                        : logged(new ModelRoute(candidate, requested, null, false, "fallback"), estimate);
+            }
+            if (estimate < bestEstimate) {
+                best = candidate;
+                bestEstimate = estimate;
+            }
+        }
+
+        boolean skipReasoning = properties.getNoThinkModels().contains(best);
+        Integer configuredMaxTokens = modelProperties.getOptions().get(best).getMaxTokens();
+        Integer maxTokens = configuredMaxTokens == null
+                ? properties.getDegradedMaxTokens()
+                : Math.min(configuredMaxTokens, properties.getDegradedMaxTokens());
+        return logged(new ModelRoute(best, requested, maxTokens, skipReasoning, "degraded"), bestEstimate);
+    }
+
+    @Override
+    public Flux<String> observe(String modelId, Flux<String> tokens) {
+        ModelStats modelStats = stats(modelId);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong firstTokenAt = new AtomicLong();
+            AtomicLong count = new AtomicLong();
+            return tokens
+                    .doOnNext(token -> {
+                        if (count.getAndIncrement() == 0) {
+                            firstTokenAt.set(System.nanoTime());
+                            modelStats.ttftMs.update((firstTokenAt.get() - start) / 1_000_000.0);
+                            modelStats.ttftTimer.record(firstTokenAt.get() - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        long end = System.nanoTime();
+                        modelStats.durationMs.update((end - start) / 1_000_000.0);
+                        modelStats.durationTimer.record(end - start, TimeUnit.NANOSECONDS);
+                        long generationNanos = end - firstTokenAt.get();
+                        if (count.get() > 1 && generationNanos > 0) {
+                            double tokensPerSecond = (count.get() - 1) * 1_000_000_000.0 / generationNanos;
+                            modelStats.tokensPerSecond.update(tokensPerSecond);
+                            modelStats.throughputSummary.record(tokensPerSecond);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 预计首字延迟，没有统计数据的模型视为0以便先积累样本
+     */
+    double estimateTtftMs(String modelId) {
+        ModelStats modelStats = stats(modelId);
+        int concurrency = Math.max(1, modelProperties.getOptions().get(modelId).getMaxConcurrency());
+        int ahead = llmAdmissionService.pendingCount(modelId) + 1 - concurrency;
+        double waitMs = ahead <= 0 ? 0 : Math.ceil((double) ahead / concurrency) * modelStats.durationMs.get();
+        return waitMs + modelStats.ttftMs.get();
+    }
+
+    ModelStats stats(String modelId) {
+        return stats.computeIfAbsent(modelId, ModelStats::new);
+    }
+
+    private ModelRoute logged(ModelRoute route, double estimate) {
+        meterRegistry.counter("chat.model.route.degraded", "requested", route.requestedModelId(),
+                "model", route.modelId(), "reason", route.reason()).increment();
+        log.info("Routed request for {} to {} ({}, estimated TTFT {} ms, maxTokens={}, skipReasoning={})",
+                route.requestedModelId(), route.modelId(), route.reason(), Math.round(estimate),
+                route.maxTokens(), route.skipReasoning());
+        return route;
+    }
+
+    final class ModelStats {
+        final Ewma ttftMs = new Ewma(true);
+        final Ewma tokensPerSecond = new Ewma(false);
+        final Ewma durationMs = new Ewma(false);
+        final Timer ttftTimer;
+        final Timer durationTimer;
+        final DistributionSummary throughputSummary;
+
+        ModelStats(String modelId) {
+            // 直方图不含排队时间，只反映模型本身的首字延迟、生成耗时和生成速度
+            ttftTimer = Timer.builder("chat.model.ttft")
+                    .description("模型首字延迟")
+                    .tag("model", modelId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            durationTimer = Timer.builder("chat.model.generation")
+                    .description("模型单次生成总耗时")
+                    .tag("model", modelId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            throughputSummary = DistributionSummary.builder("chat.model.tokens.per.second")
+                    .description("模型生成速度（token/s）")
+                    .tag("model", modelId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Gauge.builder("chat.model.ttft.ewma", ttftMs, Ewma::get)
+                    .description("首字延迟的指数移动平均（毫秒）")
+                    .tag("model", modelId)
+                    .register(meterRegistry);
+            Gauge.builder("chat.model.tokens.per.second.ewma", tokensPerSecond, Ewma::get)
+                    .description("生成速度的指数移动平均（token/s）")
+                    .tag("model", modelId)
+                    .register(meterRegistry);
+        }
+    }
+
+    final class Ewma {
+        private final boolean decaying;
+        private double value;
+        private boolean initialized;
+        private long updatedAt;
+
+        Ewma(boolean decaying) {
+            this.decaying = decaying;
+        }
+
+        synchronized void update(double sample) {
+            if (!initialized) {
+                value = sample;
+                initialized = true;
+            } else {
+                value = properties.getEwmaAlpha() * sample + (1 - properties.getEwmaAlpha()) * get();
+            }
+            updatedAt = clock.getAsLong();
+        }
+
+        /**
+         * 衰减的平均值按距上次样本的时间每个半衰期减半，新样本在衰减后的值上继续平滑
+         */
+        synchronized double get() {
+            long halfLifeMs = properties.getTtftDecayHalfLifeMs();
+            if (!decaying || !initialized || halfLifeMs <= 0) {
+                return value;
+            }
+            double elapsedMs = (clock.getAsLong() - updatedAt) / 1_000_000.0;
+            return value * Math.pow(0.5, Math.max(0, elapsedMs) / halfLifeMs);
+        }
+    }
+}
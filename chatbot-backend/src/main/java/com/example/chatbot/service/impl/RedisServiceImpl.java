@@ -7,9 +7,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -30,73 +32,93 @@ public class RedisServiceImpl implements RedisService {
     @Override
     public RedisTemplate<String, Object> getRedisTemplate() {return redisTemplate;}
 
+    /**
+     * KEYS[1]=热知识集合 KEYS[2..]=各文档的数据键；ARGV[1]=热知识最大数量 ARGV[2]=过期时间（秒），
+     * 之后每篇文档依次为集合成员和序列化后的文档。
+     * 整个脚本原子执行，热知识集合的容量检查和淘汰不会与其他请求交错，因此不需要分布式锁；
+     * 文档数据与已有值相同时只刷新过期时间，重复执行结果一致。
+     * 返回内容发生变化的文档序号（从1开始），调用方只为这些文档重建关键词索引。
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SAVE_DOCS_SCRIPT = new DefaultRedisScript<>(
+            "local max = tonumber(ARGV[1]) " +
+            "local ttl = tonumber(ARGV[2]) " +
+            "local changed = {} " +
+            "for i = 2, #KEYS do " +
+            "  local member = ARGV[2 * i - 1] " +
+            "  local value = ARGV[2 * i] " +
+            "  if not redis.call('zscore', KEYS[1], member) and redis.call('zcard', KEYS[1]) >= max then " +
+            "    redis.call('zpopmin', KEYS[1]) " +
+            "  end " +
+            "  redis.call('zincrby', KEYS[1], 1, member) " +
+            "  if redis.call('get', KEYS[i]) ~= value then " +
+            "    redis.call('set', KEYS[i], value, 'EX', ttl) " +
+            "    changed[#changed + 1] = i - 1 " +
+            "  else " +
+            "    redis.call('expire', KEYS[i], ttl) " +
+            "  end " +
+            "end " +
+            "return changed",
+            List.class);
+
     @Override
     public void saveDocToRedis(KnowledgeBase knowledge) {
-        String docId = knowledge.getId().toString();
-        boolean isInRedis = redisTemplate.hasKey(HOT_KNOWLEDGE_KEY) && redisTemplate.opsForZSet().score(HOT_KNOWLEDGE_KEY, docId) !=null;
-        
-        // 1. 检查并维护热知识集合大小 - 仅对新文档执行
-        if (!isInRedis) {
-            Long currentSize = redisTemplate.opsForZSet().size(HOT_KNOWLEDGE_KEY);
-            if (currentSize != null && currentSize >= MAX_HOT_KNOWLEDGE_NUMBER) {
-                // 如果达到最大数量，移除分数最低的条目
-                Set<ZSetOperations.TypedTuple<Object>> lowestScoreItems = redisTemplate.opsForZSet()
-                        .rangeWithScores(HOT_KNOWLEDGE_KEY, 0, 0);
-                if (lowestScoreItems != null && !lowestScoreItems.isEmpty()) {
-                    ZSetOperations.TypedTuple<Object> lowestItem = lowestScoreItems.iterator().next();
-                    if (lowestItem != null && lowestItem.getValue() != null) {
-                        String lowestId = lowestItem.getValue().toString();
-                        // 只从热知识集合中移除分数最低的条目
-                        redisTemplate.opsForZSet().remove(HOT_KNOWLEDGE_KEY, lowestId);
-                    }
-                }
-            }
+        saveDocsToRedis(List.of(knowledge));
+    }
+
+    @Override
+    public void saveDocsToRedis(List<KnowledgeBase> documents) {
+        if (documents == null || documents.isEmpty()) {
+            return;
         }
-        
-        // 2. 更新热门知识分数
-        redisTemplate.opsForZSet().incrementScore(HOT_KNOWLEDGE_KEY, docId, 1);
-        
-        // 3. 存储完整知识数据，设置过期时间
-        String knowledgeKey = KNOWLEDGE_DATA_KEY + docId;
-        KnowledgeBase existingKnowledge = (KnowledgeBase) redisTemplate.opsForValue().get(knowledgeKey);
-        
-        if (isContentChanged(existingKnowledge, knowledge)) {
-            // 存储新的或更新的知识数据
-            redisTemplate.opsForValue().set(knowledgeKey, knowledge, 
-                java.time.Duration.ofDays(DEFAULT_EXPIRATION_DAYS));
-            
-            // 4. 仅当知识内容发生变化时更新关键词索引
-            updateKeywordIndex(knowledge);
-        } else {
-            // 仅重置TTL
-            redisTemplate.expire(knowledgeKey, java.time.Duration.ofDays(DEFAULT_EXPIRATION_DAYS));
+        List<String> keys = new ArrayList<>(documents.size() + 1);
+        List<Object> args = new ArrayList<>(documents.size() * 2 + 2);
+        keys.add(HOT_KNOWLEDGE_KEY);
+        args.add(MAX_HOT_KNOWLEDGE_NUMBER);
+        args.add(Duration.ofDays(DEFAULT_EXPIRATION_DAYS).toSeconds());
+        for (KnowledgeBase knowledge : documents) {
+            String docId = knowledge.getId().toString();
+            keys.add(KNOWLEDGE_DATA_KEY + docId);
+            args.add(docId);
+            args.add(knowledge);
         }
-    }
 
-    /**
-     * 检查知识内容是否发生变化
-     * @param existingKnowledge 已存在的知识
-     * @param newKnowledge 新的知识
-     * @return 如果内容发生变化返回true，否则返回false
-     */
-    private boolean isContentChanged(KnowledgeBase existingKnowledge, KnowledgeBase newKnowledge) {
-        return existingKnowledge == null || 
-            !Objects.equals(existingKnowledge.getId(), newKnowledge.getId()) ||
-            !Objects.equals(existingKnowledge.getTitle(), newKnowledge.getTitle()) ||
-            !Objects.equals(existingKnowledge.getContent(), newKnowledge.getContent());
+        // 1. 一次往返完成热知识计数、容量淘汰和文档数据写入
+        List<?> changed = redisTemplate.execute(SAVE_DOCS_SCRIPT, keys, args.toArray());
+        if (changed == null || changed.isEmpty()) {
+            return;
+        }
+
+        // 2. 仅为内容发生变化的文档更新关键词索引
+        List<KnowledgeBase> changedDocuments = new ArrayList<>(changed.size());
+        for (Object index : changed) {
+            changedDocuments.add(documents.get(((Number) index).intValue() - 1));
+        }
+        updateKeywordIndex(changedDocuments);
     }
 
-    private void updateKeywordIndex(KnowledgeBase knowledge) {
-        String docId = knowledge.getId().toString();
-        
-        // 从标题和内容中提取关键词
-        Set<String> keywords = extractKeywords(knowledge.getTitle() + " " + knowledge.getContent());
-        
-        // 为每个关键词创建索引
-        for (String keyword : keywords) {
-            String keywordKey = KEYWORD_INDEX_KEY + keyword.toLowerCase();
-            redisTemplate.opsForSet().add(keywordKey, docId);
+    private void updateKeywordIndex(List<KnowledgeBase> documents) {
+        // 关键词提取在发送pipeline之前完成，避免占用连接
+        Map<String, Set<String>> keywordsByDoc = new LinkedHashMap<>();
+        for (KnowledgeBase knowledge : documents) {
+            // 从标题和内容中提取关键词
+            keywordsByDoc.put(knowledge.getId().toString(),
+                    extractKeywords(knowledge.getTitle() + " " + knowledge.getContent()));
         }
+
+        // 为每个关键词创建索引，所有SADD在一个pipeline中发送，SADD本身是幂等的
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <K, V> Object execute(@NonNull RedisOperations<K, V> operations) throws DataAccessException {
+                keywordsByDoc.forEach((docId, keywords) -> {
+                    for (String keyword : keywords) {
+                        operations.opsForSet().add((K) (KEYWORD_INDEX_KEY + keyword.toLowerCase()), (V) docId);
+                    }
+                });
+                return null;
+            }
+        });
     }
 
     private Set<String> extractKeywords(String text) {
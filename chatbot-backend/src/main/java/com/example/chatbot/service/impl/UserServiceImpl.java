@@ -9,6 +9,7 @@ import com.example.chatbot.exception.BusinessException;
 import com.example.chatbot.exception.ErrorCode;
 import com.example.chatbot.mapper.UserMapper;
 import com.example.chatbot.mapper.UserRoleMapper;
+import com.example.chatbot.security.UserRoleCache;
 import com.example.chatbot.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -25,6 +26,7 @@ public class UserServiceImpl implements UserService {
     private final UserMapper userMapper;
     private final UserRoleMapper userRoleMapper;
     private final PasswordEncoder passwordEncoder;
+    private final UserRoleCache userRoleCache;
 
     @Override
     public PageResponse<User> getAllUsers(int page, int size) {
@@ -92,6 +94,7 @@ public class UserServiceImpl implements UserService {
         if (user.getRoles() != null) {
             userRoleMapper.deleteUserRoles(id);
             user.getRoles().forEach(role -> userRoleMapper.insertUserRole(id, role.name()));
+            userRoleCache.evict(id);
         }
         
         return getUserById(id);
@@ -104,6 +107,7 @@ public class UserServiceImpl implements UserService {
         if (userMapper.deleteById(id) == 0) {
             throw new BusinessException(ErrorCode.USER_NOT_FOUND);
         }
+        userRoleCache.evict(id);
     }
 
     @Override
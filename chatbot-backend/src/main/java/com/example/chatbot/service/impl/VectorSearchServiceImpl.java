@@ -1,144 +1,151 @@
 package com.example.chatbot.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.chatbot.dto.ScoredDocument;
 import com.example.chatbot.entity.KnowledgeBase;
 import com.example.chatbot.exception.BusinessException;
 import com.example.chatbot.exception.ErrorCode;
 import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.service.EmbeddingService;
 import com.example.chatbot.service.RedisDistributedLock;
 import com.example.chatbot.service.RedisService;
 import com.example.chatbot.service.VectorSearchService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.milvus.client.MilvusServiceClient;
-import io.milvus.grpc.SearchResults;
-import io.milvus.param.IndexType;
-import io.milvus.param.MetricType;
-import io.milvus.param.R;
-import io.milvus.param.collection.CreateCollectionParam;
-import io.milvus.param.collection.FieldType;
-import io.milvus.param.collection.HasCollectionParam;
-import io.milvus.param.dml.InsertParam;
-import io.milvus.param.dml.SearchParam;
-import io.milvus.param.index.CreateIndexParam;
-import io.milvus.response.SearchResultsWrapper;
+import com.example.chatbot.util.MicroBatcher;
+import com.example.milvus.MilvusProperties;
+import com.example.milvus.VectorHit;
+import com.example.milvus.VectorStore;
+import com.example.milvus.embedded.EmbeddedVectorStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class VectorSearchServiceImpl implements VectorSearchService {
-    private final MilvusServiceClient milvusClient;
+    private final VectorStore vectorStore;
     private final KnowledgeBaseMapper knowledgeBaseMapper;
     private final RedisService redisService;
     private final RedisDistributedLock distributedLock;
+    private final EmbeddingService embeddingService;
+    private final EmbeddingProperties embeddingProperties;
+    private final MilvusProperties milvusProperties;
+    private final RetrievalProperties retrievalProperties;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler retrievalScheduler;
+
+    /**
+     * 检索合并器按topK区分，同一个合并器内的查询集合和检索参数都相同，可以放进同一个SearchParam
+     */
+    private final Map<Integer, MicroBatcher<float[], List<VectorHit>>> searchBatchers = new ConcurrentHashMap<>();
 
     private static final String KNOWLEDGE_DATA_KEY = "knowledge_data:";
     private static final String COLLECTION_NAME = "knowledge_base";
-    private static final String VECTOR_FIELD = "vector";
-    private static final String ID_FIELD = "id";
-
-    @Value("${embedding.url}")
-    private String embeddingUrl;
-    @Value("${embedding.vector-dim:384}")
-    private int vectorDim;
-    @Value("${milvus.search.nprobe:50}")
-    private int nprobe;
+    private static final String TOMBSTONE_COUNT_KEY = "vector:tombstones:" + COLLECTION_NAME;
+    private static final String COMPACTION_LOCK_KEY = "vector:compaction:" + COLLECTION_NAME;
+    // 同一文档的写入、更新和删除共用一把锁
+    private static final String INDEX_LOCK_PREFIX = "vector:index:";
+
+    // 嵌入模式启动对齐时，数据库更新时间晚于“索引写回时间减去该余量”的文档都重新写入，
+    // 覆盖数据库已提交但向量在写回之后才写入的情况
+    private static final Duration RECONCILE_MARGIN = Duration.ofMinutes(1);
+    private static final int RECONCILE_BATCH_SIZE = 100;
+
+    // 嵌入模式下每个实例各有一份本地索引，墓碑计数和压缩锁只在本实例内有效
+    private final AtomicLong localTombstones = new AtomicLong();
+    private final ReentrantLock localCompactionLock = new ReentrantLock();
+
     @Value("${milvus.search.score-threshold:0.9}")
     private double scoreThreshold;
-    @Value("${milvus.index.m:8}")
-    private int hnswM;
-    @Value("${milvus.index.ef-construction:64}")
-    private int hnswEfConstruction;
-
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Value("${milvus.search.batch-enabled:true}")
+    private boolean searchBatchEnabled;
+    @Value("${milvus.search.batch-window-ms:2}")
+    private long searchBatchWindowMs;
+    @Value("${milvus.search.max-batch-size:16}")
+    private int searchMaxBatchSize;
+    @Value("${milvus.compaction.tombstone-threshold:1000}")
+    private long compactionTombstoneThreshold;
 
     /**
-     * 初始化方法：创建 Milvus 集合
+     * 初始化方法：创建向量集合（如不存在）
+     * 远程模式下集合和HNSW索引建在Milvus中，嵌入模式下从本地索引文件加载
      */
     public void init() {
-        createCollection();
-    }
-
-    /**
-     * 创建 Milvus 集合和索引（如不存在）
-     */
-    private void createCollection() {
         try {
-            R<Boolean> hasCollectionResp = milvusClient.hasCollection(HasCollectionParam.newBuilder()
-                    .withCollectionName(COLLECTION_NAME)
-                    .build());
-            if (Boolean.TRUE.equals(hasCollectionResp.getData())) {
-                return;
-            }
-
-            List<FieldType> fieldTypes = List.of(
-                    FieldType.newBuilder()
-                            .withName(ID_FIELD)
-                            .withDataType(io.milvus.grpc.DataType.Int64)
-                            .withPrimaryKey(true)
-                            .withAutoID(false)
-                            .build(),
-                    FieldType.newBuilder()
-                            .withName(VECTOR_FIELD)
-                            .withDataType(io.milvus.grpc.DataType.FloatVector)
-                            .withDimension(vectorDim)
-                            .build()
-            );
-            CreateCollectionParam createCollectionParam = CreateCollectionParam.newBuilder()
-                    .withCollectionName(COLLECTION_NAME)
-                    .withFieldTypes(fieldTypes)
-                    .build();
-
-            milvusClient.createCollection(createCollectionParam);
-
-            CreateIndexParam createIndexParam = CreateIndexParam.newBuilder()
-                    .withCollectionName(COLLECTION_NAME)
-                    .withFieldName(VECTOR_FIELD)
-                    .withIndexType(IndexType.HNSW)
-                    .withMetricType(MetricType.COSINE)
-                    .withExtraParam(String.format("{\"M\": %d, \"efConstruction\": %d}", hnswM, hnswEfConstruction))
-                    .build();
-
-            milvusClient.createIndex(createIndexParam);
-
-            log.info("Successfully created Milvus collection: {}", COLLECTION_NAME);
+            vectorStore.createCollectionIfAbsent(COLLECTION_NAME, embeddingProperties.getVectorDim());
         } catch (Exception e) {
-            log.error("Failed to create Milvus collection", e);
-            throw new RuntimeException("Failed to create Milvus collection", e);
+            log.error("Failed to create vector collection", e);
+            throw new RuntimeException("Failed to create vector collection", e);
+        }
+        if (vectorStore instanceof EmbeddedVectorStore store) {
+            // 补写缺失的向量需要调用向量化服务，放到后台执行，不阻塞启动
+            Mono.fromRunnable(() -> reconcileEmbeddedIndex(store))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe(null, e -> log.error("Failed to reconcile embedded vector index", e));
         }
     }
 
     /**
-     * 通过 Python 服务生成文本向量
+     * 嵌入模式下本地索引定期写回磁盘，进程崩溃时最后一次写回之后的变更会丢失，启动后以数据库为准对齐：
+     * 先取索引中的主键再查数据库，之后新写入的文档不会被误删；
+     * 索引缺失的文档和写回之后更新过的文档重新向量化写入，数据库中已不存在的向量删除。
+     * @return 重新写入和删除的向量数量之和
      */
-    List<Float> generateEmbedding(String text) throws Exception {
-        Map<String, String> request = Map.of("text", text);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<Map<String, String>> entity = new HttpEntity<>(request, headers);
-
-        ResponseEntity<String> response = restTemplate.postForEntity(embeddingUrl, entity, String.class);
-
-        Map<String, Object> result = objectMapper.readValue(response.getBody(), Map.class);
-        List<Double> embeddingDouble = (List<Double>) result.get("embedding");
-        List<Float> embedding = new ArrayList<>();
-        for (Double d : embeddingDouble) {
-            embedding.add(d.floatValue());
+    int reconcileEmbeddedIndex(EmbeddedVectorStore store) {
+        Set<Long> indexed = store.ids(COLLECTION_NAME);
+        Instant flushedAt = store.flushedAt(COLLECTION_NAME);
+        LocalDateTime staleAfter = flushedAt == null ? null
+                : LocalDateTime.ofInstant(flushedAt.minus(RECONCILE_MARGIN), ZoneId.systemDefault());
+
+        List<KnowledgeBase> rows = knowledgeBaseMapper.selectList(new QueryWrapper<KnowledgeBase>()
+                .select("id", "updated_at"));
+        Set<Long> extra = new HashSet<>(indexed);
+        List<Long> stale = new ArrayList<>();
+        for (KnowledgeBase row : rows) {
+            extra.remove(row.getId());
+            boolean updatedSinceFlush = staleAfter == null
+                    || (row.getUpdatedAt() != null && row.getUpdatedAt().isAfter(staleAfter));
+            if (!indexed.contains(row.getId()) || updatedSinceFlush) {
+                stale.add(row.getId());
+            }
+        }
+
+        int failed = 0;
+        for (int from = 0; from < stale.size(); from += RECONCILE_BATCH_SIZE) {
+            List<Long> chunk = stale.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, stale.size()));
+            failed += indexDocuments(knowledgeBaseMapper.findByIds(chunk)).size();
         }
-        return embedding;
+        deleteDocuments(List.copyOf(extra));
+        store.flush();
+        log.info("Reconciled embedded vector index with database: {} reindexed, {} failed, {} removed",
+                stale.size() - failed, failed, extra.size());
+        return stale.size() - failed + extra.size();
     }
 
     /**
@@ -148,42 +155,45 @@ public class VectorSearchServiceImpl implements VectorSearchService {
      */
     @Override
     public List<KnowledgeBase> searchSimilar(String query, int topK) {
+        return searchSimilar(embedQuery(query), topK);
+    }
+
+    @Override
+    public float[] embedQuery(String query) {
         try {
-            List<Float> queryVector = generateEmbedding(query);
-
-            SearchParam searchParam = SearchParam.newBuilder()
-                    .withCollectionName(COLLECTION_NAME)
-                    .withVectorFieldName(VECTOR_FIELD)
-                    .withVectors(List.of(queryVector))
-                    .withTopK(topK)
-                    .withMetricType(MetricType.COSINE)
-                    .withOutFields(List.of(ID_FIELD))
-                    .withParams(Map.of("nprobe", String.valueOf(nprobe)).toString())
-                    .build();
-
-            R<SearchResults> resp = milvusClient.search(searchParam);
-            if (resp.getStatus() != R.Status.Success.getCode()) {
-                log.error("Milvus search failed: {}", resp.getMessage());
-                return new ArrayList<>();
-            }
+            return embeddingService.embed(query);
+        } catch (Exception e) {
+            log.error("Failed to generate query embedding", e);
+            throw new RuntimeException("Failed to generate query embedding", e);
+        }
+    }
+
+    @Override
+    public List<KnowledgeBase> searchSimilar(float[] queryVector, int topK) {
+        return searchSimilarScored(queryVector, topK).stream()
+                .map(ScoredDocument::document)
+                .toList();
+    }
 
-            // 过滤相似度分数低于阈值的结果
-            SearchResultsWrapper wrapper = new SearchResultsWrapper(resp.getData().getResults());
-            List<Long> ids = wrapper.getIDScore(0).stream()
-                    .filter(idScore -> idScore.getScore() > scoreThreshold)
-                    .map(SearchResultsWrapper.IDScore::getLongID)
+    @Override
+    public List<ScoredDocument> searchSimilarScored(float[] queryVector, int topK) {
+        try {
+            // 过滤相似度分数低于阈值的结果，结果按相似度从高到低返回
+            List<VectorHit> hits = searchVectors(queryVector, topK).stream()
+                    .filter(hit -> hit.score() > scoreThreshold)
                     .toList();
 
-            if (!ids.isEmpty()) {
+            if (!hits.isEmpty()) {
                 // 先从Redis缓存中查找
-                List<KnowledgeBase> results = new ArrayList<>();
+                Map<Long, KnowledgeBase> docsById = new HashMap<>();
                 List<Long> missingIds = new ArrayList<>();
                 
-                for (Long id : ids) {
+                for (VectorHit hit : hits) {
+                    Long id = hit.id();
                     KnowledgeBase cachedDoc = (KnowledgeBase) redisService.getRedisTemplate()
                             .opsForValue().get(KNOWLEDGE_DATA_KEY + id);
                     if (cachedDoc != null) {
-                        results.add(cachedDoc);
+                        docsById.put(id, cachedDoc);
                     } else {
                         missingIds.add(id);
                     }
@@ -191,10 +201,19 @@ public class VectorSearchServiceImpl implements VectorSearchService {
 
                 // 如果Redis中没有找到所有文档，则从数据库中查询缺失的文档
                 if (!missingIds.isEmpty()) {
-                    List<KnowledgeBase> dbResults = knowledgeBaseMapper.findByIds(missingIds);
-                    results.addAll(dbResults);
+                    for (KnowledgeBase doc : knowledgeBaseMapper.findByIds(missingIds)) {
+                        docsById.put(doc.getId(), doc);
+                    }
+                }
+
+                // 按相似度顺序输出，已从数据库删除的文档跳过
+                List<ScoredDocument> results = new ArrayList<>(hits.size());
+                for (VectorHit hit : hits) {
+                    KnowledgeBase doc = docsById.get(hit.id());
+                    if (doc != null) {
+                        results.add(new ScoredDocument(doc, hit.score()));
+                    }
                 }
-                
                 return results;
             }
             return new ArrayList<>();
@@ -205,27 +224,45 @@ public class VectorSearchServiceImpl implements VectorSearchService {
     }
 
     /**
-     * 单条文档入库（向量化并存入 Milvus）
+     * 并发到达的相似检索在很短的窗口内合并为一次多向量检索，按下标把结果分发给各自的调用方
+     * 合并后的检索在检索专用线程池上执行，等待时间不超过检索截止时间；
+     * 嵌入模式下检索在进程内完成，没有请求开销可以分摊，直接检索
+     */
+    private List<VectorHit> searchVectors(float[] queryVector, int topK) {
+        if (!searchBatchEnabled || embedded()) {
+            return vectorStore.search(COLLECTION_NAME, queryVector, topK);
+        }
+        MicroBatcher<float[], List<VectorHit>> batcher = searchBatchers.computeIfAbsent(topK,
+                k -> new MicroBatcher<>("vector-search", searchMaxBatchSize, searchBatchWindowMs,
+                        vectors -> vectorStore.searchBatch(COLLECTION_NAME, vectors, k),
+                        Schedulers.parallel(), retrievalScheduler, meterRegistry));
+        CompletableFuture<List<VectorHit>> future = batcher.submit(queryVector);
+        long timeoutMs = retrievalProperties.getDeadlineMs();
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Vector search failed", e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new RuntimeException("Timed out waiting for vector search after " + timeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for vector search", e);
+        }
+    }
+
+    /**
+     * 单条文档入库（向量化并写入向量集合）
      */
     @Override
     public void indexDocument(KnowledgeBase knowledge) {
-        String lockKey = "vector:index:" + knowledge.getId();
+        String lockKey = INDEX_LOCK_PREFIX + knowledge.getId();
         String lockValue = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
         try {
             if (lockValue != null) {
                 try {
-                    List<Float> vector = generateEmbedding(knowledge.getTitle() + " " + knowledge.getContent());
-
-                    List<InsertParam.Field> fields = new ArrayList<>();
-                    fields.add(new InsertParam.Field(ID_FIELD, List.of(knowledge.getId())));
-                    fields.add(new InsertParam.Field(VECTOR_FIELD, List.of(vector)));
-
-                    InsertParam insertParam = InsertParam.newBuilder()
-                            .withCollectionName(COLLECTION_NAME)
-                            .withFields(fields)
-                            .build();
-
-                    milvusClient.insert(insertParam);
+                    float[] vector = embeddingService.embed(documentText(knowledge));
+                    vectorStore.insert(COLLECTION_NAME, List.of(knowledge.getId()), List.of(vector));
                     log.debug("Successfully indexed document: {}", knowledge.getTitle());
                 } catch (Exception e) {
                     log.error("Failed to index document", e);
@@ -243,28 +280,46 @@ public class VectorSearchServiceImpl implements VectorSearchService {
 
     /**
      * 批量文档入库
+     * 向量化失败的文档不写入向量集合，由调用方决定如何处理
      */
     @Override
-    public void indexDocuments(List<KnowledgeBase> knowledgeList) {
+    public List<Long> indexDocuments(List<KnowledgeBase> knowledgeList) {
+        if (knowledgeList.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
         try {
+            List<float[]> embeddings = embeddingService.embedAll(knowledgeList.stream()
+                    .map(this::documentText)
+                    .toList());
+
             List<Long> ids = new ArrayList<>();
-            List<List<Float>> vectors = new ArrayList<>();
-            for (KnowledgeBase knowledge : knowledgeList) {
-                ids.add(knowledge.getId());
-                vectors.add(generateEmbedding(knowledge.getTitle() + " " + knowledge.getContent()));
+            List<float[]> vectors = new ArrayList<>();
+            List<Long> failedIds = new ArrayList<>();
+            for (int i = 0; i < knowledgeList.size(); i++) {
+                if (embeddings.get(i) != null) {
+                    ids.add(knowledgeList.get(i).getId());
+                    vectors.add(embeddings.get(i));
+                } else {
+                    failedIds.add(knowledgeList.get(i).getId());
+                }
             }
 
-            List<InsertParam.Field> fields = new ArrayList<>();
-            fields.add(new InsertParam.Field(ID_FIELD, ids));
-            fields.add(new InsertParam.Field(VECTOR_FIELD, vectors));
-
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(COLLECTION_NAME)
-                    .withFields(fields)
-                    .build();
+            if (!ids.isEmpty()) {
+                vectorStore.insert(COLLECTION_NAME, ids, vectors);
+            }
 
-            milvusClient.insert(insertParam);
-            log.info("Successfully indexed {} documents", knowledgeList.size());
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            double docsPerSecond = ids.size() / Math.max(seconds, 1e-9);
+            DistributionSummary.builder("embedding.import.throughput")
+                    .description("批量导入的向量化及入库吞吐量")
+                    .baseUnit("docs/s")
+                    .register(meterRegistry)
+                    .record(docsPerSecond);
+            log.info("Indexed {} of {} documents in {} ms ({} docs/s), {} failed",
+                    ids.size(), knowledgeList.size(), Math.round(seconds * 1000),
+                    String.format("%.1f", docsPerSecond), failedIds.size());
+            return failedIds;
         } catch (Exception e) {
             log.error("Failed to index documents", e);
             throw new RuntimeException("Failed to index documents", e);
@@ -272,23 +327,63 @@ public class VectorSearchServiceImpl implements VectorSearchService {
     }
 
     /**
-     * 删除文档向量
+     * 删除文档向量，与indexDocument、updateDocument共用同一把锁，删除不会被并发的更新覆盖
      */
     @Override
     public void deleteDocument(Long id) {
-        String lockKey = "vector:delete:" + id;
+        String lockKey = INDEX_LOCK_PREFIX + id;
+        String lockValue = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
+        try {
+            if (lockValue != null) {
+                deleteDocuments(List.of(id));
+            } else {
+                throw new BusinessException(ErrorCode.INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            if (lockValue != null) {
+                distributedLock.unlock(lockKey, lockValue);
+            }
+        }
+    }
+
+    /**
+     * 批量删除文档向量，按id in [...]分组删除，删除本身幂等所以不逐条加锁
+     * 与并发的单条更新交错时向量可能被重新写入，检索时数据库中已删除的文档会被跳过
+     */
+    @Override
+    public void deleteDocuments(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            vectorStore.delete(COLLECTION_NAME, ids);
+            recordTombstones(ids.size());
+            log.debug("Successfully deleted {} document indexes", ids.size());
+        } catch (Exception e) {
+            log.error("Failed to delete document indexes", e);
+            throw new RuntimeException("Failed to delete document index", e);
+        }
+    }
+
+    /**
+     * 更新文档向量（upsert原子替换，更新期间文档始终可以被检索到）
+     * 与indexDocument共用同一把锁，同一文档的写入不会交错
+     */
+    @Override
+    public void updateDocument(KnowledgeBase knowledge) {
+        String lockKey = INDEX_LOCK_PREFIX + knowledge.getId();
         String lockValue = distributedLock.tryLock(lockKey, 10, TimeUnit.SECONDS);
         try {
             if (lockValue != null) {
                 try {
-                    milvusClient.delete(io.milvus.param.dml.DeleteParam.newBuilder()
-                            .withCollectionName(COLLECTION_NAME)
-                            .withExpr(ID_FIELD + " == " + id)
-                            .build());
-                    log.debug("Successfully deleted document index: {}", id);
+                    float[] vector = embeddingService.embed(documentText(knowledge));
+                    vectorStore.upsert(COLLECTION_NAME, List.of(knowledge.getId()), List.of(vector));
+                    // upsert会把旧向量标记为删除，同样留下墓碑
+                    recordTombstones(1);
+                    log.debug("Successfully updated document index: {}", knowledge.getTitle());
                 } catch (Exception e) {
-                    log.error("Failed to delete document index", e);
-                    throw new RuntimeException("Failed to delete document index", e);
+                    log.error("Failed to update document index", e);
+                    throw new RuntimeException("Failed to update document index", e);
                 }
             } else {
                 throw new BusinessException(ErrorCode.INTERNAL_SERVER_ERROR);
@@ -301,17 +396,87 @@ public class VectorSearchServiceImpl implements VectorSearchService {
     }
 
     /**
-     * 更新文档向量（先删后加）
+     * 墓碑数量达到阈值时触发压缩，多个实例之间通过分布式锁保证只有一个实例提交压缩
+     * 计数器在Redis中累计，压缩后扣减本次读到的数量，压缩期间新增的墓碑留到下一轮
+     * 嵌入模式下计数器和锁都在本实例内，每个实例压缩自己的本地索引
      */
     @Override
-    public void updateDocument(KnowledgeBase knowledge) {
+    public boolean compactIfNeeded() {
+        long tombstones = tombstoneCount();
+        if (tombstones < compactionTombstoneThreshold) {
+            return false;
+        }
+        if (embedded()) {
+            if (!localCompactionLock.tryLock()) {
+                return false;
+            }
+            try {
+                return compact(tombstones);
+            } finally {
+                localCompactionLock.unlock();
+            }
+        }
+        String lockValue = distributedLock.tryLock(COMPACTION_LOCK_KEY, 60, TimeUnit.SECONDS);
+        if (lockValue == null) {
+            return false;
+        }
+        try {
+            return compact(tombstones);
+        } finally {
+            distributedLock.unlock(COMPACTION_LOCK_KEY, lockValue);
+        }
+    }
+
+    private boolean compact(long tombstones) {
         try {
-            deleteDocument(knowledge.getId());
-            indexDocument(knowledge);
-            log.debug("Successfully updated document index: {}", knowledge.getTitle());
+            vectorStore.compact(COLLECTION_NAME);
+            if (embedded()) {
+                localTombstones.addAndGet(-tombstones);
+            } else {
+                redisService.getRedisTemplate().opsForValue().decrement(TOMBSTONE_COUNT_KEY, tombstones);
+            }
+            log.info("Compacted vector collection {} after {} tombstones", COLLECTION_NAME, tombstones);
+            return true;
         } catch (Exception e) {
-            log.error("Failed to update document index", e);
-            throw new RuntimeException("Failed to update document index", e);
+            log.error("Failed to compact vector collection", e);
+            return false;
         }
     }
+
+    private boolean embedded() {
+        return milvusProperties.getMode() == MilvusProperties.Mode.EMBEDDED;
+    }
+
+    /**
+     * 计数失败只影响压缩时机，不影响写入
+     */
+    private void recordTombstones(int count) {
+        if (embedded()) {
+            localTombstones.addAndGet(count);
+            return;
+        }
+        try {
+            redisService.getRedisTemplate().opsForValue().increment(TOMBSTONE_COUNT_KEY, count);
+        } catch (Exception e) {
+            log.warn("Failed to record vector tombstones: {}", e.getMessage());
+        }
+    }
+
+    private long tombstoneCount() {
+        if (embedded()) {
+            return localTombstones.get();
+        }
+        try {
+            // INCRBY 0直接返回整数，不经过值序列化器
+            Long count = redisService.getRedisTemplate().opsForValue().increment(TOMBSTONE_COUNT_KEY, 0);
+            return count == null ? 0 : count;
+        } catch (Exception e) {
+            log.warn("Failed to read vector tombstone count: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private String documentText(KnowledgeBase knowledge) {
+        return knowledge.getTitle() + " " + knowledge.getContent();
+    }
 } 
\ No newline at end of file
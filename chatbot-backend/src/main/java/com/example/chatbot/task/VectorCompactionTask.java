@@ -0,0 +1,18 @@
+package com.example.chatbot.task;
+
+import com.example.chatbot.service.VectorSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class VectorCompactionTask {
+    private final VectorSearchService vectorSearchService;
+
+    @Scheduled(fixedDelayString = "${milvus.compaction.check-interval-ms:300000}",
+            initialDelayString = "${milvus.compaction.check-interval-ms:300000}") // 定期检查墓碑数量，超过阈值才压缩
+    public void compactVectorIndex() {
+        vectorSearchService.compactIfNeeded();
+    }
+}
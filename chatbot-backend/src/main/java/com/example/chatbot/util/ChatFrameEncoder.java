@@ -0,0 +1,83 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.dto.ChatResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.Objects;
+
+/**
+ * 流式响应的SSE帧编码，每个流一个实例
+ * 同一个流中sessionId、modelId等字段不变，只有message和sequence不同。
+ * 第一帧按模板序列化一次，拆出两个字段前后的固定片段，之后每帧只转义message再拼接，不再经过ObjectWriter。
+ * 不变字段与模板不同的帧，或序列化配置导致无法拆分时，仍完整序列化。
+ */
+public class ChatFrameEncoder {
+    private static final String MARKER = "\u0001";
+    private static final String ESCAPED_MARKER = "\\u0001";
+    private static final String MESSAGE_FIELD = "\"message\":\"";
+    private static final String SEQUENCE_FIELD = "\"sequence\":\"";
+
+    private final ObjectWriter writer;
+    private ChatResponse template;
+    private String prefix;
+    private String middle;
+    private String suffix;
+
+    public ChatFrameEncoder(ObjectWriter writer) {
+        this.writer = writer;
+    }
+
+    public String encode(ChatResponse response) throws JsonProcessingException {
+        if (response.getMessage() == null || response.getSequence() == null) {
+            return writer.writeValueAsString(response);
+        }
+        if (template == null) {
+            prepare(response);
+        }
+        if (prefix == null || !sameConstantFields(response)) {
+            return writer.writeValueAsString(response);
+        }
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        return new StringBuilder(prefix.length() + middle.length() + suffix.length() + response.getMessage().length() + 16)
+                .append(prefix)
+                .append(encoder.quoteAsString(response.getMessage()))
+                .append(middle)
+                .append(encoder.quoteAsString(response.getSequence()))
+                .append(suffix)
+                .toString();
+    }
+
+    /**
+     * message和sequence替换为标记后序列化，按"字段名":"标记"定位；字段值中的引号会被转义，不会与定位串混淆
+     */
+    private void prepare(ChatResponse response) throws JsonProcessingException {
+        template = ChatResponse.builder()
+                .message(MARKER)
+                .sessionId(response.getSessionId())
+                .role(response.getRole())
+                .modelId(response.getModelId())
+                .sequence(MARKER)
+                .truncated(response.getTruncated())
+                .build();
+        String json = writer.writeValueAsString(template);
+        int message = json.indexOf(MESSAGE_FIELD + ESCAPED_MARKER + "\"");
+        int sequence = json.indexOf(SEQUENCE_FIELD + ESCAPED_MARKER + "\"");
+        if (message < 0 || sequence < message) {
+            return;
+        }
+        int messageEnd = message + MESSAGE_FIELD.length();
+        int sequenceEnd = sequence + SEQUENCE_FIELD.length();
+        prefix = json.substring(0, messageEnd);
+        middle = json.substring(messageEnd + ESCAPED_MARKER.length(), sequenceEnd);
+        suffix = json.substring(sequenceEnd + ESCAPED_MARKER.length());
+    }
+
+    private boolean sameConstantFields(ChatResponse response) {
+        return Objects.equals(template.getSessionId(), response.getSessionId())
+                && Objects.equals(template.getRole(), response.getRole())
+                && Objects.equals(template.getModelId(), response.getModelId())
+                && Objects.equals(template.getTruncated(), response.getTruncated());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.entity.ChatMessage;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 合并数据库中的消息与尚未落库的消息
+ * 写入前的消息还没有主键，以角色、createdAt和内容识别同一条消息；
+ * createdAt在提交给写入器时确定，之后落库、追加到会话窗口的都是同一个值。
+ */
+public final class ChatMessageMerger {
+    private ChatMessageMerger() {
+    }
+
+    /**
+     * @return 按createdAt排序的合并结果，两边都有的消息只保留stored中的一条
+     */
+    public static List<ChatMessage> merge(List<ChatMessage> stored, List<ChatMessage> pending) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+        Set<String> storedKeys = stored.stream()
+                .map(ChatMessageMerger::key)
+                .collect(Collectors.toSet());
+        List<ChatMessage> merged = new ArrayList<>(stored);
+        for (ChatMessage message : pending) {
+            if (!storedKeys.contains(key(message))) {
+                merged.add(message);
+            }
+        }
+        merged.sort(Comparator.comparing(ChatMessage::getCreatedAt));
+        return merged;
+    }
+
+    /**
+     * 数据库中的createdAt精度为微秒，先截断再参与比较；内容只取哈希，键可以直接作为Lua脚本参数
+     */
+    public static String key(ChatMessage message) {
+        return message.getRole() + "|" + message.getCreatedAt().truncatedTo(ChronoUnit.MICROS)
+                + "|" + message.getContent().hashCode();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.dto.AssembledContext;
+import com.example.chatbot.entity.KnowledgeBase;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 知识库上下文组装器
+ * 把检索到的文档切分为段落，按检索排名和关键词命中打分，去掉重复段落后
+ * 在模型的token预算内按分数贪心选取，最后按文档顺序和段落原始顺序输出。
+ */
+@Slf4j
+@Component
+public class ContextAssembler {
+    private static final String HEADER = "结合以下知识库内容回答：\n";
+    private static final String TITLE_PREFIX = "标题：";
+    private static final String CONTENT_PREFIX = "内容：";
+
+    private final DistributionSummary savedTokensSummary;
+    private final DistributionSummary contextTokensSummary;
+
+    public ContextAssembler(MeterRegistry meterRegistry) {
+        this.savedTokensSummary = DistributionSummary.builder("chat.context.tokens.saved")
+                .description("每次请求裁剪掉的知识库上下文token数")
+                .register(meterRegistry);
+        this.contextTokensSummary = DistributionSummary.builder("chat.context.tokens")
+                .description("每次请求携带的知识库上下文token数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param documents 按检索优先级排列的文档
+     * @param keywords 用户问题的关键词，用于段落打分
+     * @param budgetTokens 上下文的token预算
+     */
+    public AssembledContext assemble(List<KnowledgeBase> documents, List<String> keywords, int budgetTokens) {
+        if (documents.isEmpty()) {
+            return new AssembledContext("", 0, 0, 0);
+        }
+
+        int originalTokens = TokenEstimator.estimate(HEADER);
+        List<Passage> candidates = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int rank = 0; rank < documents.size(); rank++) {
+            KnowledgeBase doc = documents.get(rank);
+            originalTokens += TokenEstimator.estimate(TITLE_PREFIX + doc.getTitle() + "\n" + CONTENT_PREFIX + doc.getContent() + "\n\n");
+            String[] paragraphs = doc.getContent() == null ? new String[0] : doc.getContent().split("\\n+");
+            int order = 0;
+            for (String paragraph : paragraphs) {
+                String text = paragraph.strip();
+                // 不同文档或同一文档中重复的段落只保留排名最靠前的一份
+                if (text.isEmpty() || !seen.add(normalize(text))) {
+                    continue;
+                }
+                candidates.add(new Passage(rank, order, text, TokenEstimator.estimate(text) + 1,
+                        score(text, doc.getTitle(), keywords, rank, order)));
+                order++;
+            }
+        }
+
+        int used = TokenEstimator.estimate(HEADER);
+        boolean[] docIncluded = new boolean[documents.size()];
+        List<Passage> selected = new ArrayList<>();
+        candidates.sort(Comparator.comparingDouble(Passage::score).reversed());
+        for (Passage passage : candidates) {
+            int titleCost = docIncluded[passage.docRank()] ? 0 : titleTokens(documents.get(passage.docRank()));
+            int remaining = budgetTokens - used - titleCost;
+            if (passage.tokens() <= remaining) {
+                selected.add(passage);
+            } else if (selected.isEmpty() && remaining > 0) {
+                // 最相关的段落本身超出预算时截断后保留，保证至少有一段上下文
+                String truncated = TokenEstimator.truncate(passage.text(), remaining - 1);
+                if (truncated.isEmpty()) {
+                    continue;
+                }
+                selected.add(new Passage(passage.docRank(), passage.order(), truncated,
+                        TokenEstimator.estimate(truncated) + 1, passage.score()));
+            } else {
+                continue;
+            }
+            used += titleCost + selected.get(selected.size() - 1).tokens();
+            docIncluded[passage.docRank()] = true;
+        }
+
+        if (selected.isEmpty()) {
+            return new AssembledContext("", 0, originalTokens, 0);
+        }
+        selected.sort(Comparator.comparingInt(Passage::docRank).thenComparingInt(Passage::order));
+        StringBuilder builder = new StringBuilder(HEADER);
+        int currentDoc = -1;
+        for (Passage passage : selected) {
+            if (passage.docRank() != currentDoc) {
+                if (currentDoc >= 0) {
+                    builder.append("\n");
+                }
+                currentDoc = passage.docRank();
+                builder.append(TITLE_PREFIX).append(documents.get(currentDoc).getTitle()).append("\n");
+                builder.append(CONTENT_PREFIX);
+            }
+            builder.append(passage.text()).append("\n");
+        }
+
+        AssembledContext context = new AssembledContext(builder.toString(), used, originalTokens, selected.size());
+        savedTokensSummary.record(context.savedTokens());
+        contextTokensSummary.record(context.tokens());
+        log.debug("Assembled knowledge context: {} passages, {} tokens (original {}, saved {}, budget {})",
+                context.passages(), context.tokens(), originalTokens, context.savedTokens(), budgetTokens);
+        return context;
+    }
+
+    private int titleTokens(KnowledgeBase doc) {
+        return TokenEstimator.estimate(TITLE_PREFIX + doc.getTitle() + "\n" + CONTENT_PREFIX) + 1;
+    }
+
+    /**
+     * 段落得分 = 关键词命中数 + 文档排名先验 + 首段加成
+     * 标题命中关键词时该文档的所有段落都会得到加分
+     */
+    private double score(String text, String title, List<String> keywords, int rank, int order) {
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        String lowerTitle = title == null ? "" : title.toLowerCase(Locale.ROOT);
+        double score = 1.0 / (rank + 1);
+        for (String keyword : keywords) {
+            String lowerKeyword = keyword.toLowerCase(Locale.ROOT);
+            if (lowerText.contains(lowerKeyword)) {
+                score += 1.0;
+            }
+            if (lowerTitle.contains(lowerKeyword)) {
+                score += 0.5;
+            }
+        }
+        if (order == 0) {
+            score += 0.2;
+        }
+        return score;
+    }
+
+    private String normalize(String text) {
+        return text.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+
+    private record Passage(int docRank, int order, String text, int tokens, double score) {}
+}
@@ -0,0 +1,133 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量化服务的HTTP客户端
+ * 基于JDK HttpClient，HTTP/1.1连接在请求之间保持并复用，建立连接和等待响应都有超时。
+ * 请求时声明优先接受application/octet-stream，服务端返回按行排列的小端float32字节，
+ * 直接解码为float[]；旧版本服务端只返回JSON时按JSON解析。
+ */
+@Component
+public class EmbeddingClient {
+    static final String BINARY_MEDIA_TYPE = "application/octet-stream";
+    private static final String ACCEPT = BINARY_MEDIA_TYPE + ", application/json;q=0.5";
+
+    private final EmbeddingProperties properties;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public EmbeddingClient(EmbeddingProperties properties) {
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .build();
+    }
+
+    public float[] embed(String text) {
+        return post(properties.getUrl(), Map.of("text", text), properties.getReadTimeoutMs(), 1).get(0);
+    }
+
+    public List<float[]> embedBatch(List<String> texts) {
+        return embedBatch(texts, properties.getBatchReadTimeoutMs());
+    }
+
+    /**
+     * 指定读超时的批量请求，在线查询的微批只合并了几条短文本，使用单条请求的读超时
+     */
+    public List<float[]> embedBatch(List<String> texts, long timeoutMs) {
+        return post(properties.getBatchUrl(), Map.of("texts", texts), timeoutMs, texts.size());
+    }
+
+    private List<float[]> post(String url, Map<String, ?> body, long timeoutMs, int expected) {
+        HttpResponse<byte[]> response;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", ACCEPT)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Embedding request to " + url + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for embedding service", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Embedding service returned HTTP " + response.statusCode());
+        }
+
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        List<float[]> vectors = contentType.startsWith(BINARY_MEDIA_TYPE)
+                ? decodeBinary(response.body(), expected)
+                : decodeJson(response.body());
+        if (vectors.size() != expected) {
+            throw new IllegalStateException("Expected " + expected + " embeddings but got " + vectors.size());
+        }
+        return vectors;
+    }
+
+    /**
+     * 整个响应体按向量个数均分，每段直接复制进一个float[]
+     */
+    static List<float[]> decodeBinary(byte[] body, int count) {
+        if (count == 0 || body.length % (count * Float.BYTES) != 0) {
+            throw new IllegalStateException("Binary embedding payload of " + body.length
+                    + " bytes cannot hold " + count + " vectors");
+        }
+        int dim = body.length / Float.BYTES / count;
+        FloatBuffer floats = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dim];
+            floats.get(vector);
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private List<float[]> decodeJson(byte[] body) {
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            List<float[]> vectors = new ArrayList<>();
+            if (root.has("embedding")) {
+                vectors.add(toArray(root.get("embedding")));
+            } else if (root.has("embeddings")) {
+                for (JsonNode node : root.get("embeddings")) {
+                    vectors.add(toArray(node));
+                }
+            }
+            return vectors;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse embedding response", e);
+        }
+    }
+
+    private static float[] toArray(JsonNode node) {
+        float[] vector = new float[node.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = node.get(i).floatValue();
+        }
+        return vector;
+    }
+}
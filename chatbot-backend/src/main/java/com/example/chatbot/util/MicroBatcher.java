@@ -0,0 +1,142 @@
+package com.example.chatbot.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 并发请求的微批合并
+ * 第一个请求到达后开启一个很短的时间窗口，窗口内到达的请求合并为一次批量调用，
+ * 攒满maxBatchSize时不等窗口到期立即发出；批量结果按下标分发给各自的调用方。
+ * 每个批次的实际大小记录到microbatch.fill，请求在窗口中等待的时间记录到microbatch.delay，
+ * 两者都带batcher标签，用于评估窗口和批大小的配置是否合适。
+ * 批量调用失败或被线程池拒绝时，本批次所有调用方的future都以异常结束，调用方应自行设置等待上限。
+ */
+@Slf4j
+public class MicroBatcher<I, O> {
+    public static final String FILL_METRIC = "microbatch.fill";
+    public static final String DELAY_METRIC = "microbatch.delay";
+
+    private final int maxBatchSize;
+    private final long windowMs;
+    private final Function<List<I>, List<O>> batchCall;
+    private final Scheduler timer;
+    private final Scheduler executor;
+    private final DistributionSummary fill;
+    private final Timer delay;
+
+    private List<Pending<I, O>> pending = new ArrayList<>();
+    private Disposable scheduledFlush;
+
+    /**
+     * @param name 指标中的batcher标签
+     * @param batchCall 批量调用，返回结果与输入一一对应
+     * @param timer 负责窗口计时，需要支持延迟调度
+     * @param executor 执行批量调用，通常是可阻塞的线程池
+     */
+    public MicroBatcher(String name, int maxBatchSize, long windowMs, Function<List<I>, List<O>> batchCall,
+                        Scheduler timer, Scheduler executor, MeterRegistry meterRegistry) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowMs = windowMs;
+        this.batchCall = batchCall;
+        this.timer = timer;
+        this.executor = executor;
+        this.fill = DistributionSummary.builder(FILL_METRIC)
+                .description("每次批量调用合并的请求数")
+                .tag("batcher", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.delay = Timer.builder(DELAY_METRIC)
+                .description("请求为等待合并而增加的延迟")
+                .tag("batcher", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<O> submit(I item) {
+        Pending<I, O> request = new Pending<>(item, new CompletableFuture<>(), System.nanoTime());
+        List<Pending<I, O>> full = null;
+        synchronized (this) {
+            pending.add(request);
+            if (pending.size() >= maxBatchSize) {
+                full = drain();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return request.future();
+    }
+
+    private void flush() {
+        List<Pending<I, O>> batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = drain();
+        }
+        dispatch(batch);
+    }
+
+    private List<Pending<I, O>> drain() {
+        List<Pending<I, O>> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending<I, O>> batch) {
+        long now = System.nanoTime();
+        fill.record(batch.size());
+        for (Pending<I, O> request : batch) {
+            delay.record(now - request.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+        try {
+            executor.schedule(() -> execute(batch));
+        } catch (RuntimeException e) {
+            // 线程池拒绝时本批次不会执行，必须结束所有调用方的future，否则调用方会一直等待
+            log.warn("Micro batch of {} requests rejected by executor: {}", batch.size(), e.getMessage());
+            fail(batch, e);
+        }
+    }
+
+    private void execute(List<Pending<I, O>> batch) {
+        try {
+            List<O> results = batchCall.apply(batch.stream().map(Pending::item).toList());
+            if (results == null || results.size() != batch.size()) {
+                throw new IllegalStateException("Expected " + batch.size() + " results but got "
+                        + (results == null ? 0 : results.size()));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            log.debug("Micro batch of {} requests failed", batch.size(), e);
+            fail(batch, e);
+        }
+    }
+
+    private void fail(List<Pending<I, O>> batch, Throwable error) {
+        for (Pending<I, O> request : batch) {
+            request.future().completeExceptionally(error);
+        }
+    }
+
+    private record Pending<I, O>(I item, CompletableFuture<O> future, long enqueuedAt) {}
+}
@@ -0,0 +1,80 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.dto.ScoredDocument;
+import com.example.chatbot.entity.KnowledgeBase;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 加权倒数排名融合（Reciprocal Rank Fusion）
+ * 文档的融合分数为 Σ weight / (k + rank)，rank为文档在各检索层结果中的名次（从1开始）。
+ * 只依赖名次，不需要对向量相似度和关键词命中数这类量纲不同的分数做归一化；
+ * 被多个检索层同时命中的文档得分更高。按文档ID去重，整体为O(n)。
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    /**
+     * @param weight 检索层权重
+     * @param documents 按分数从高到低排列的检索结果
+     */
+    public record Ranking(double weight, List<ScoredDocument> documents) {}
+
+    /**
+     * @param rankings 各检索层的结果，排在前面的检索层在融合分数相同时优先
+     * @param k 平滑常数，越大名次之间的差距越小
+     * @param topK 最多返回的文档数
+     * @return 按融合分数从高到低排列的文档
+     */
+    public static List<ScoredDocument> fuse(List<Ranking> rankings, int k, int topK) {
+        Map<Long, Candidate> candidates = new HashMap<>();
+        List<Candidate> ordered = new ArrayList<>();
+        for (Ranking ranking : rankings) {
+            Set<Long> seenInRanking = new HashSet<>();
+            int rank = 0;
+            for (ScoredDocument scored : ranking.documents()) {
+                KnowledgeBase doc = scored.document();
+                // 同一检索层内的重复文档只按最靠前的名次计分
+                if (doc == null || doc.getId() == null || !seenInRanking.add(doc.getId())) {
+                    continue;
+                }
+                rank++;
+                Candidate candidate = candidates.get(doc.getId());
+                if (candidate == null) {
+                    candidate = new Candidate(doc, ordered.size());
+                    candidates.put(doc.getId(), candidate);
+                    ordered.add(candidate);
+                }
+                candidate.score += ranking.weight() / (k + rank);
+            }
+        }
+
+        ordered.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed()
+                .thenComparingInt(c -> c.firstSeen));
+        List<ScoredDocument> result = new ArrayList<>(Math.min(topK, ordered.size()));
+        for (int i = 0; i < ordered.size() && i < topK; i++) {
+            Candidate candidate = ordered.get(i);
+            result.add(new ScoredDocument(candidate.document, candidate.score));
+        }
+        return result;
+    }
+
+    private static final class Candidate {
+        private final KnowledgeBase document;
+        private final int firstSeen;
+        private double score;
+
+        private Candidate(KnowledgeBase document, int firstSeen) {
+            this.document = document;
+            this.firstSeen = firstSeen;
+        }
+    }
+}
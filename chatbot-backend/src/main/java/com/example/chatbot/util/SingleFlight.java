@@ -0,0 +1,49 @@
+package com.example.chatbot.util;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求的流合并
+ * 同一个key在执行期间只订阅一次上游，其他调用方订阅同一个多播流；
+ * 使用replay保证后加入的调用方也能从第一个元素开始收到完整结果。
+ * 上游结束或所有订阅方都取消后从表中移除，下一个请求重新发起。
+ */
+@Slf4j
+public class SingleFlight<T> {
+    private final ConcurrentHashMap<String, Flux<T>> inFlight = new ConcurrentHashMap<>();
+
+    public Flux<T> join(String key, Supplier<Flux<T>> upstream) {
+        return Flux.defer(() -> {
+            boolean[] created = {false};
+            Flux<T> shared = inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return share(k, upstream.get());
+            });
+            if (!created[0]) {
+                log.debug("Joining in-flight stream {}", key);
+            }
+            return shared;
+        });
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    private Flux<T> share(String key, Flux<T> source) {
+        AtomicReference<Flux<T>> self = new AtomicReference<>();
+        // 在结束信号传给订阅方之前移除，保证调用方收到完成信号后再次请求会重新发起
+        Flux<T> shared = source
+                .doOnTerminate(() -> inFlight.remove(key, self.get()))
+                .doOnCancel(() -> inFlight.remove(key, self.get()))
+                .replay()
+                .refCount();
+        self.set(shared);
+        return shared;
+    }
+}
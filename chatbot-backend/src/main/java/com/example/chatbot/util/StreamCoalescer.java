@@ -0,0 +1,83 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.properties.StreamCoalescingProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * 流式分片合并
+ * 模型每输出一个token就是一个分片，逐个发送会产生大量SSE事件和网络flush。
+ * 第一个分片立即发送以保证首字延迟不变，之后的分片在时间窗口内累积，
+ * 窗口到期或累积字节数达到上限时合并为一个分片发送。
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamCoalescer {
+    private final StreamCoalescingProperties properties;
+
+    public Flux<String> coalesce(Flux<String> chunks) {
+        if (!properties.isEnabled()) {
+            return chunks;
+        }
+        return coalesce(chunks, properties.getMaxBytes(), properties.getWindowMs(), Schedulers.parallel());
+    }
+
+    /**
+     * windowTimeout按时间切分窗口，窗口内再由bufferUntil在累积字节数达到上限时立即结束当前帧，
+     * 窗口到期时发出剩余的分片；空窗口不产生帧。
+     * 两者都使用公平背压：下游（SSE写出）慢于模型时分片在窗口内累积成更大的帧，而不是因请求不足报错。
+     * 全部由操作符组合而成，下游的订阅Context可以传到上游。
+     */
+    static Flux<String> coalesce(Flux<String> chunks, int maxBytes, long windowMs, Scheduler timer) {
+        Duration window = Duration.ofMillis(windowMs);
+        return chunks.switchOnFirst((first, all) -> first.hasValue()
+                ? all.skip(1)
+                        .windowTimeout(Integer.MAX_VALUE, window, timer, true)
+                        .concatMap(chunksInWindow -> frames(chunksInWindow, maxBytes), 1)
+                        .startWith(first.get())
+                : all);
+    }
+
+    /**
+     * 依次拼接分片，累积字节数达到上限时结束当前帧
+     */
+    private static Flux<String> frames(Flux<String> chunksInWindow, int maxBytes) {
+        int[] pendingBytes = {0};
+        return chunksInWindow
+                .bufferUntil(chunk -> {
+                    pendingBytes[0] += utf8Length(chunk);
+                    if (pendingBytes[0] < maxBytes) {
+                        return false;
+                    }
+                    pendingBytes[0] = 0;
+                    return true;
+                })
+                .map(batch -> String.join("", batch));
+    }
+
+    /**
+     * 不分配字节数组计算UTF-8编码长度
+     */
+    static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.chatbot.util;
+
+/**
+ * 流式think块过滤器
+ * 逐字符处理模型输出，去掉&lt;think&gt;...&lt;/think&gt;块及其后的空白，标签被拆分在多个分片中时同样能识别。
+ * 每个响应流使用一个实例，accept返回本次可以推送给前端的增量文本，
+ * 同时累积清理后的完整回答，流结束后通过result获取，不需要再对全文做正则替换。
+ * 部分模型（如经Ollama调用的deepseek-r1）省略开头的&lt;think&gt;，只输出推理内容和&lt;/think&gt;。
+ * 因此输出开头不是&lt;think&gt;时，正文先暂存：遇到&lt;/think&gt;说明暂存的是推理内容，整体丢弃；
+ * 遇到&lt;think&gt;、流结束或暂存超过maxHeldChars时，判定没有省略开头标签，暂存内容作为正文输出。
+ * 非线程安全，同一个流的分片按顺序调用即可。
+ */
+public final class ThinkBlockFilter {
+    private static final char[] OPEN_TAG = "<think>".toCharArray();
+    private static final char[] CLOSE_TAG = "</think>".toCharArray();
+    // 默认暂存上限，覆盖max_tokens为2048时推理内容的常见长度
+    private static final int DEFAULT_MAX_HELD_CHARS = 8192;
+
+    private enum State {
+        LEADING,  // 输出开头或think块之后，跳过空白字符
+        THINK,    // think块内部，全部丢弃
+        OUTPUT    // 正文
+    }
+
+    private State state = State.LEADING;
+    // 可能是标签开头的字符，等待后续分片确认
+    private final char[] pending = new char[CLOSE_TAG.length];
+    private int pendingLength;
+    private final StringBuilder text = new StringBuilder();
+    // 尚未确认是正文还是推理内容的输出，holding为false后不再使用
+    private final StringBuilder held = new StringBuilder();
+    private final int maxHeldChars;
+    private boolean holding = true;
+
+    public ThinkBlockFilter() {
+        this(DEFAULT_MAX_HELD_CHARS);
+    }
+
+    /**
+     * @param maxHeldChars 等待&lt;/think&gt;时最多暂存的字符数，超过后按正文输出
+     */
+    public ThinkBlockFilter(int maxHeldChars) {
+        this.maxHeldChars = maxHeldChars;
+    }
+
+    /**
+     * 处理一个分片
+     * @return 本分片中可见的增量文本，可能为空字符串
+     */
+    public String accept(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return "";
+        }
+        int start = text.length();
+        for (int i = 0; i < chunk.length(); i++) {
+            process(chunk.charAt(i));
+        }
+        return text.substring(start);
+    }
+
+    /**
+     * 流结束时调用，输出最后一个分片中未能确认为标签的字符
+     * @return 剩余的增量文本
+     */
+    public String finish() {
+        int start = text.length();
+        int length = pendingLength;
+        pendingLength = 0;
+        for (int i = 0; i < length; i++) {
+            emit(pending[i]);
+        }
+        release();
+        return text.substring(start);
+    }
+
+    /**
+     * @return 清理后的完整回答，去掉了末尾空白
+     */
+    public String result() {
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private void process(char c) {
+        if (pendingLength == 0 && c != '<') {
+            emit(c);
+            return;
+        }
+        pending[pendingLength++] = c;
+        if (matches(OPEN_TAG, true)) {
+            pendingLength = 0;
+            release();
+            state = State.THINK;
+        } else if (matches(CLOSE_TAG, true)) {
+            pendingLength = 0;
+            if (holding) {
+                // 没有开头标签的think块：之前暂存的都是推理内容
+                held.setLength(0);
+                holding = false;
+            }
+            state = State.LEADING;
+        } else if (!matches(OPEN_TAG, false) && !matches(CLOSE_TAG, false)) {
+            // 不是标签：第一个字符作为普通文本输出，其余字符重新处理，其中可能包含新的'<'
+            int length = pendingLength;
+            pendingLength = 0;
+            emit(pending[0]);
+            char[] rest = new char[length - 1];
+            System.arraycopy(pending, 1, rest, 0, rest.length);
+            for (char r : rest) {
+                process(r);
+            }
+        }
+    }
+
+    private void emit(char c) {
+        switch (state) {
+            case THINK -> {
+                // think块内容直接丢弃
+            }
+            case LEADING -> {
+                if (!Character.isWhitespace(c)) {
+                    state = State.OUTPUT;
+                    output(c);
+                }
+            }
+            case OUTPUT -> output(c);
+        }
+    }
+
+    private void output(char c) {
+        if (!holding) {
+            text.append(c);
+            return;
+        }
+        held.append(c);
+        if (held.length() > maxHeldChars) {
+            release();
+        }
+    }
+
+    // 确认没有省略开头标签，暂存内容作为正文输出
+    private void release() {
+        if (holding) {
+            holding = false;
+            text.append(held);
+            held.setLength(0);
+        }
+    }
+
+    /**
+     * @param full true时要求pending与标签完全相同，false时只要求是标签的前缀
+     */
+    private boolean matches(char[] tag, boolean full) {
+        if (pendingLength > tag.length || (full && pendingLength != tag.length)) {
+            return false;
+        }
+        for (int i = 0; i < pendingLength; i++) {
+            if (pending[i] != tag[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
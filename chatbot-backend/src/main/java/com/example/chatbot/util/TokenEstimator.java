@@ -0,0 +1,62 @@
+package com.example.chatbot.util;
+
+/**
+ * 本地token数估算
+ * 不依赖具体模型的分词器，按Qwen/DeepSeek等模型的经验值估算：
+ * 中日韩字符及全角标点约1个token，连续的字母数字约每4个字符1个token，其他符号各1个token，空白不计。
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int asciiRun = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint < 128 && Character.isLetterOrDigit(codePoint)) {
+                asciiRun++;
+                continue;
+            }
+            tokens += (asciiRun + 3) / 4;
+            asciiRun = 0;
+            if (!Character.isWhitespace(codePoint)) {
+                tokens++;
+            }
+        }
+        return tokens + (asciiRun + 3) / 4;
+    }
+
+    /**
+     * 按token预算截断文本
+     * @return 估算token数不超过maxTokens的最长前缀
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        if (estimate(text) <= maxTokens) {
+            return text;
+        }
+        // 估算值随长度单调递增，二分查找最长前缀
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (estimate(text.substring(0, mid)) <= maxTokens) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low > 0 && Character.isHighSurrogate(text.charAt(low - 1))) {
+            low--;
+        }
+        return text.substring(0, low);
+    }
+}
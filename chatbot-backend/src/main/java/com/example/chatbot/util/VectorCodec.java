@@ -0,0 +1,29 @@
+package com.example.chatbot.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 向量与小端float32字节之间的转换
+ * 每个分量固定4个字节，1024维向量只占4KB，没有JSON文本和装箱对象的开销。
+ * 应用内部统一使用float[]表示向量，Milvus SDK要求的{@code List<Float>}由starter中的FloatArrayList包装。
+ */
+public final class VectorCodec {
+    private VectorCodec() {
+    }
+
+    public static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] fromBytes(byte[] bytes) {
+        if (bytes.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("Vector payload length " + bytes.length + " is not a multiple of 4");
+        }
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,3 @@
+-- 为按会话读取最近消息的查询创建索引，避免对 chat_messages 全表排序
+CREATE INDEX IF NOT EXISTS idx_chat_messages_session_user_created
+    ON chatbotmb.chat_messages (session_id, user_id, created_at DESC);
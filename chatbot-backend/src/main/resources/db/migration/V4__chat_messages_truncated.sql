@@ -0,0 +1,3 @@
+-- 标记客户端中途断开时只生成了一部分的回答
+ALTER TABLE chatbotmb.chat_messages
+    ADD COLUMN IF NOT EXISTS truncated BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,99 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.properties.AnswerCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerCacheServiceImplTest {
+
+    private static final String SCOPE = "1:history";
+
+    private AnswerCacheProperties properties;
+    private AnswerCacheServiceImpl answerCache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AnswerCacheProperties();
+        properties.setMaxDistance(0.05);
+        properties.setMaxEntries(2);
+        answerCache = new AnswerCacheServiceImpl(properties);
+    }
+
+    @Test
+    void lookup_ShouldHitForSimilarQueryWithSameDocuments() {
+        KnowledgeBase doc = doc(1L, "Docker安装步骤");
+        answerCache.put("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc), "先安装Docker Desktop");
+
+        String answer = answerCache.lookup("qwen3", SCOPE, new float[]{0.99f, 0.05f, 0.0f}, List.of(doc));
+
+        assertEquals("先安装Docker Desktop", answer);
+    }
+
+    @Test
+    void lookup_ShouldMissWhenQueryTooFarOrModelDiffers() {
+        KnowledgeBase doc = doc(1L, "Docker安装步骤");
+        answerCache.put("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc), "先安装Docker Desktop");
+
+        assertNull(answerCache.lookup("qwen3", SCOPE, new float[]{0.0f, 1.0f, 0.0f}, List.of(doc)));
+        assertNull(answerCache.lookup("deepseekR1", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+    }
+
+    @Test
+    void lookup_ShouldMissWhenDocumentVersionChanged() {
+        KnowledgeBase doc = doc(1L, "Docker安装步骤");
+        answerCache.put("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc), "先安装Docker Desktop");
+
+        KnowledgeBase updated = doc(1L, "Docker安装步骤（已更新）");
+        assertNull(answerCache.lookup("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(updated)));
+    }
+
+    @Test
+    void lookup_ShouldNotShareAnswersAcrossUsersOrConversationHistories() {
+        KnowledgeBase doc = doc(1L, "Docker安装步骤");
+        answerCache.put("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc), "先安装Docker Desktop");
+
+        assertNull(answerCache.lookup("qwen3", "2:history", new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+        assertNull(answerCache.lookup("qwen3", "1:other-history", new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+        assertNull(answerCache.lookup("qwen3", null, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+        assertEquals("先安装Docker Desktop", answerCache.lookup("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+    }
+
+    @Test
+    void invalidateDocument_ShouldRemoveEntriesUsingDocument() {
+        KnowledgeBase doc = doc(1L, "Docker安装步骤");
+        answerCache.put("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc), "先安装Docker Desktop");
+
+        answerCache.invalidateDocument(1L);
+
+        assertNull(answerCache.lookup("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+    }
+
+    @Test
+    void put_ShouldEvictLeastRecentlyUsedEntry() {
+        KnowledgeBase doc = doc(1L, "Docker安装步骤");
+        answerCache.put("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc), "回答A");
+        answerCache.put("qwen3", SCOPE, new float[]{0.0f, 1.0f, 0.0f}, List.of(doc), "回答B");
+        // 访问A后B成为最久未使用的条目
+        assertEquals("回答A", answerCache.lookup("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+        answerCache.put("qwen3", SCOPE, new float[]{0.0f, 0.0f, 1.0f}, List.of(doc), "回答C");
+
+        assertEquals("回答A", answerCache.lookup("qwen3", SCOPE, new float[]{1.0f, 0.0f, 0.0f}, List.of(doc)));
+        assertNull(answerCache.lookup("qwen3", SCOPE, new float[]{0.0f, 1.0f, 0.0f}, List.of(doc)));
+        assertEquals("回答C", answerCache.lookup("qwen3", SCOPE, new float[]{0.0f, 0.0f, 1.0f}, List.of(doc)));
+    }
+
+    private KnowledgeBase doc(Long id, String content) {
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setId(id);
+        kb.setTitle("Docker");
+        kb.setContent(content);
+        kb.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 0, 0));
+        return kb;
+    }
+}
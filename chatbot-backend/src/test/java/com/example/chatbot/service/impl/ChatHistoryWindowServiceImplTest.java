@@ -0,0 +1,110 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.HistoryWindowProperties;
+import com.example.chatbot.service.ChatMessageWriter;
+import com.example.chatbot.util.ChatMessageMerger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 会话窗口重建：数据库快照与写入器中尚未落库的消息合并，去重键与消息一起交给重建脚本
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatHistoryWindowServiceImplTest {
+
+    private static final String SESSION = "s1";
+    private static final Long USER = 7L;
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ChatMessageMapper chatMessageMapper;
+
+    @Mock
+    private ChatMessageWriter chatMessageWriter;
+
+    private ChatHistoryWindowServiceImpl windowService;
+
+    @BeforeEach
+    void setUp() {
+        HistoryWindowProperties properties = new HistoryWindowProperties();
+        properties.setSize(3);
+        properties.setTtlSeconds(60);
+        windowService = new ChatHistoryWindowServiceImpl(redisTemplate, chatMessageMapper, properties, chatMessageWriter);
+    }
+
+    @Test
+    void getRecentMessages_ShouldRebuildFromDatabaseAndPendingMessagesWithDedupKeys() {
+        ChatMessage stored1 = message("user", "问题1", 0);
+        ChatMessage stored2 = message("assistant", "回答1", 1);
+        // 回答1已落库但仍在写入器的已提交集合中，问题2尚未落库
+        ChatMessage pendingDuplicate = message("assistant", "回答1", 1);
+        pendingDuplicate.setCreatedAt(pendingDuplicate.getCreatedAt().plusNanos(300));
+        ChatMessage pending = message("user", "问题2", 2);
+        when(chatMessageWriter.pendingMessages(SESSION, USER)).thenReturn(List.of(pendingDuplicate, pending));
+        // 数据库按时间倒序返回
+        when(chatMessageMapper.findRecentBySessionIdAndUserId(SESSION, USER, 3))
+                .thenReturn(new ArrayList<>(List.of(stored2, stored1)));
+        ChatMessage staged = message("assistant", "回答2", 3);
+        // 窗口不存在，读取返回null；重建脚本返回合并了暂存消息的窗口
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(null)
+                .thenReturn(List.of(stored1, stored2, pending, staged));
+
+        List<ChatMessage> history = windowService.getRecentMessages(SESSION, USER);
+
+        assertEquals(List.of(stored1, stored2, pending, staged), history);
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        // 第一次是读取窗口，第二次是重建
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), keys.capture(), args.capture());
+        assertEquals(List.of("chat_window:{7:s1}", "chat_window_ready:{7:s1}", "chat_window_staging:{7:s1}"),
+                keys.getAllValues().get(1));
+        assertEquals(Arrays.asList(3, 60L, 3,
+                        ChatMessageMerger.key(stored1), ChatMessageMerger.key(stored2), ChatMessageMerger.key(pending),
+                        stored1, stored2, pending),
+                Arrays.asList(args.getAllValues().get(1)));
+    }
+
+    @Test
+    void append_ShouldPassDedupKeyMatchingTheRebuiltSnapshot() {
+        ChatMessage message = message("user", "问题", 0);
+        message.setCreatedAt(message.getCreatedAt().plusNanos(999));
+        ChatMessage fromDatabase = message("user", "问题", 0);
+
+        windowService.append(message);
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("chat_window:{7:s1}",
+                        "chat_window_ready:{7:s1}", "chat_window_staging:{7:s1}")),
+                eq(message), eq(3), eq(60L), eq(ChatMessageMerger.key(fromDatabase)));
+    }
+
+    private static ChatMessage message(String role, String content, int second) {
+        ChatMessage message = new ChatMessage();
+        message.setRole(role);
+        message.setContent(content);
+        message.setSessionId(SESSION);
+        message.setUserId(USER);
+        message.setCreatedAt(T0.plusSeconds(second));
+        return message;
+    }
+}
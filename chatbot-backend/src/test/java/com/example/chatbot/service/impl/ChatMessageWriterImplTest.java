@@ -0,0 +1,183 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.ChatMessage;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.MessageWriteBehindProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageWriterImplTest {
+
+    @Mock
+    private ChatMessageMapper chatMessageMapper;
+
+    @TempDir
+    Path tempDir;
+
+    private ChatMessageWriterImpl writer;
+    private final List<List<String>> insertedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        writer = newWriter(10000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    void flush_ShouldWriteMultiRowBatchesInSubmissionOrder() {
+        recordInserts();
+        for (int i = 1; i <= 4; i++) {
+            writer.write(message("s1", "m" + i));
+        }
+
+        writer.flush();
+
+        assertEquals(List.of(List.of("m1", "m2", "m3"), List.of("m4")), insertedBatches);
+    }
+
+    @Test
+    void flush_ShouldSpoolOnFailureAndReplayBeforeNewMessages() {
+        when(chatMessageMapper.insertBatch(anyList())).thenThrow(new RuntimeException("database down"));
+        writer.write(message("s1", "m1"));
+        writer.write(message("s1", "m2"));
+        writer.flush();
+        // 失败的批次写入回放文件，下一轮先于溢出文件回放
+        assertTrue(Files.exists(tempDir.resolve("spool.jsonl.replaying")));
+
+        reset(chatMessageMapper);
+        recordInserts();
+        writer.write(message("s1", "m3"));
+        writer.flush();
+
+        assertEquals(List.of(List.of("m1", "m2"), List.of("m3")), insertedBatches);
+        assertFalse(Files.exists(tempDir.resolve("spool.jsonl")));
+        assertFalse(Files.exists(tempDir.resolve("spool.jsonl.replaying")));
+    }
+
+    @Test
+    void write_ShouldKeepSessionOrderWhenQueueOverflows() {
+        writer.stop();
+        writer = newWriter(2);
+        recordInserts();
+        for (int i = 1; i <= 7; i++) {
+            writer.write(message("s1", "m" + i));
+        }
+
+        writer.flush();
+
+        assertEquals(List.of("m1", "m2", "m3", "m4", "m5", "m6", "m7"),
+                insertedBatches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void write_ShouldReplayFailedBatchBeforeMessagesOverflowingLater() {
+        writer.stop();
+        writer = newWriter(2);
+        when(chatMessageMapper.insertBatch(anyList())).thenThrow(new RuntimeException("database down"));
+        writer.write(message("s1", "m1"));
+        writer.flush();
+        for (int i = 2; i <= 4; i++) {
+            writer.write(message("s1", "m" + i));
+        }
+
+        reset(chatMessageMapper);
+        recordInserts();
+        writer.flush();
+
+        assertEquals(List.of("m1", "m2", "m3", "m4"), insertedBatches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    void pendingMessages_ShouldIncludeQueuedAndSpooledMessagesUntilWritten() {
+        when(chatMessageMapper.insertBatch(anyList())).thenThrow(new RuntimeException("database down"));
+        writer.write(message("s1", "m1"));
+        writer.flush();
+        writer.write(message("s1", "m2"));
+        writer.write(message("s2", "other"));
+
+        assertEquals(List.of("m1", "m2"), contents(writer.pendingMessages("s1", 1L)));
+        assertTrue(writer.pendingMessages("s1", 2L).isEmpty());
+
+        reset(chatMessageMapper);
+        recordInserts();
+        writer.flush();
+
+        assertTrue(writer.pendingMessages("s1", 1L).isEmpty());
+    }
+
+    @Test
+    void discardSession_ShouldDropQueuedAndSpooledMessagesOfThatSession() {
+        when(chatMessageMapper.insertBatch(anyList())).thenThrow(new RuntimeException("database down"));
+        writer.write(message("s1", "spooled"));
+        writer.write(message("s2", "kept"));
+        writer.flush();
+        writer.write(message("s1", "queued"));
+
+        writer.discardSession("s1", 1L);
+
+        reset(chatMessageMapper);
+        recordInserts();
+        writer.flush();
+        assertEquals(List.of(List.of("kept")), insertedBatches);
+        assertTrue(writer.pendingMessages("s1", 1L).isEmpty());
+    }
+
+    private ChatMessageWriterImpl newWriter(int queueCapacity) {
+        MessageWriteBehindProperties properties = new MessageWriteBehindProperties();
+        properties.setQueueCapacity(queueCapacity);
+        properties.setBatchSize(3);
+        // 测试中通过flush手动刷盘，避免后台线程干扰
+        properties.setFlushIntervalMs(60_000);
+        properties.setSpoolPath(tempDir.resolve("spool.jsonl").toString());
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ChatMessageWriterImpl writer = new ChatMessageWriterImpl(chatMessageMapper, properties, objectMapper, new SimpleMeterRegistry());
+        writer.start();
+        return writer;
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+
+    private void recordInserts() {
+        when(chatMessageMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> batch = invocation.getArgument(0);
+            insertedBatches.add(batch.stream().map(ChatMessage::getContent).toList());
+            return batch.size();
+        });
+    }
+
+    private ChatMessage message(String sessionId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSessionId(sessionId);
+        message.setUserId(1L);
+        message.setRole("user");
+        message.setContent(content);
+        return message;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.dto.ChatRequest;
+import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.dto.ModelRoute;
+import com.example.chatbot.dto.RetrievalResult;
+import com.example.chatbot.mapper.ChatMessageMapper;
+import com.example.chatbot.properties.AnswerCacheProperties;
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.security.ChatbotUserPrincipal;
+import com.example.chatbot.service.AnswerCacheService;
+import com.example.chatbot.service.ChatHistoryWindowService;
+import com.example.chatbot.service.ChatMessageWriter;
+import com.example.chatbot.service.KnowledgeRetrievalService;
+import com.example.chatbot.service.LlmAdmissionService;
+import com.example.chatbot.service.ModelRouter;
+import com.example.chatbot.service.RedisDistributedLock;
+import com.example.chatbot.service.RedisService;
+import com.example.chatbot.util.ChatTrace;
+import com.example.chatbot.util.ContextAssembler;
+import com.example.chatbot.util.KeywordExtractor;
+import com.example.chatbot.util.StreamCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 语义缓存作用域：由会话历史决定，不含用户
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatServiceImplTest {
+
+    @Mock
+    private ChatClient chatClient;
+    @Mock
+    private ChatMessageMapper chatMessageMapper;
+    @Mock
+    private ChatHistoryWindowService chatHistoryWindowService;
+    @Mock
+    private ChatMessageWriter chatMessageWriter;
+    @Mock
+    private RedisService redisService;
+    @Mock
+    private KeywordExtractor keywordExtractor;
+    @Mock
+    private ContextAssembler contextAssembler;
+    @Mock
+    private StreamCoalescer streamCoalescer;
+    @Mock
+    private LlmAdmissionService llmAdmissionService;
+    @Mock
+    private ModelRouter modelRouter;
+    @Mock
+    private KnowledgeRetrievalService knowledgeRetrievalService;
+    @Mock
+    private AnswerCacheService answerCacheService;
+    @Mock
+    private RedisDistributedLock distributedLock;
+
+    private ChatServiceImpl chatService;
+
+    @BeforeEach
+    void setUp() {
+        ModelProperties modelProperties = new ModelProperties();
+        modelProperties.setOptions(Map.of("qwen3", new ModelProperties.ModelOption()));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        chatService = new ChatServiceImpl(chatClient, chatMessageMapper, chatHistoryWindowService, chatMessageWriter,
+                modelProperties, redisService, keywordExtractor, contextAssembler, streamCoalescer,
+                llmAdmissionService, modelRouter, knowledgeRetrievalService, answerCacheService,
+                new AnswerCacheProperties(), Schedulers.immediate(), distributedLock, meterRegistry);
+        when(knowledgeRetrievalService.retrieveAsync(anyString(), anyList()))
+                .thenReturn(Mono.just(new RetrievalResult(List.of(), List.of(), 0, new float[]{1f})));
+        when(answerCacheService.lookup(eq("qwen3"), anyString(), any(), anyList())).thenReturn("缓存的回答");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void processMessage_ShouldShareAnswerCacheAcrossUsersOnFreshConversations() {
+        ChatResponse first = askAs(1L, "什么是Docker");
+        ChatResponse second = askAs(2L, "什么是Docker");
+
+        assertEquals("缓存的回答", first.getMessage());
+        assertEquals("缓存的回答", second.getMessage());
+        ArgumentCaptor<String> scopes = ArgumentCaptor.forClass(String.class);
+        verify(answerCacheService, times(2)).lookup(eq("qwen3"), scopes.capture(), any(), anyList());
+        assertEquals(scopes.getAllValues().get(0), scopes.getAllValues().get(1));
+        verifyNoInteractions(chatClient);
+    }
+
+    private ChatResponse askAs(Long userId, String message) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new ChatbotUserPrincipal(userId, "user" + userId, "", List.of()), null, List.of()));
+        ChatRequest request = new ChatRequest();
+        request.setMessage(message);
+        return chatService.processMessage(request, ModelRoute.direct("qwen3"), new ChatTrace(new SimpleMeterRegistry()));
+    }
+}
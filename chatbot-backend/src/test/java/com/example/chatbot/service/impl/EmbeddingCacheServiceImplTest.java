@@ -0,0 +1,97 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.properties.EmbeddingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingCacheServiceImplTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private EmbeddingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private EmbeddingCacheServiceImpl cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new EmbeddingProperties();
+        properties.setModel("Qwen/Qwen3-Embedding-0.6B");
+        properties.setVectorDim(3);
+        properties.getCache().setLocalMaxEntries(2);
+        properties.getCache().setRedisEnabled(false);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new EmbeddingCacheServiceImpl(redisTemplate, properties, meterRegistry);
+    }
+
+    @Test
+    void get_ShouldHitForTextWithSameNormalizedContent() {
+        cache.put("Docker 安装步骤", new float[]{1f, 2f, 3f});
+
+        // 全角字母和多余空白规范化后与原文相同
+        float[] vector = cache.get("  Ｄｏｃｋｅｒ   安装步骤\n");
+
+        assertArrayEquals(new float[]{1f, 2f, 3f}, vector);
+    }
+
+    @Test
+    void get_ShouldMissAfterModelOrDimensionChanges() {
+        cache.put("Docker安装步骤", new float[]{1f, 2f, 3f});
+
+        properties.setModel("BAAI/bge-m3");
+        assertNull(cache.get("Docker安装步骤"));
+
+        properties.setModel("Qwen/Qwen3-Embedding-0.6B");
+        properties.setVectorDim(4);
+        assertNull(cache.get("Docker安装步骤"));
+    }
+
+    @Test
+    void put_ShouldSkipVectorsWithUnexpectedDimension() {
+        cache.put("Docker安装步骤", new float[]{1f, 2f});
+
+        assertNull(cache.get("Docker安装步骤"));
+    }
+
+    @Test
+    void put_ShouldEvictLeastRecentlyUsedEntry() {
+        cache.put("A", new float[]{1f, 0f, 0f});
+        cache.put("B", new float[]{0f, 1f, 0f});
+        // 访问A后B成为最久未使用的条目
+        assertNotNull(cache.get("A"));
+        cache.put("C", new float[]{0f, 0f, 1f});
+
+        assertNotNull(cache.get("A"));
+        assertNull(cache.get("B"));
+        assertNotNull(cache.get("C"));
+    }
+
+    @Test
+    void getAll_ShouldTreatRedisFailureAsMissAndReportHitRatio() {
+        properties.getCache().setRedisEnabled(true);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("redis down"));
+        cache.put("A", new float[]{1f, 0f, 0f});
+
+        List<float[]> vectors = cache.getAll(List.of("A", "B"));
+
+        assertNotNull(vectors.get(0));
+        assertNull(vectors.get(1));
+        assertEquals(0.5, meterRegistry.get("embedding.cache.hit.ratio").gauge().value());
+        assertEquals(1.0, meterRegistry.get("embedding.cache.lookups").tag("result", "miss").counter().count());
+    }
+}
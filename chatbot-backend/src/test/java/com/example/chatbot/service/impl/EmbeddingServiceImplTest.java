@@ -0,0 +1,190 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.util.EmbeddingClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 本地模拟的向量化服务收到的每个批次
+    private final List<List<String>> receivedBatches = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean failFirstBatchContainingC = new AtomicBoolean(true);
+
+    private HttpServer server;
+    private EmbeddingProperties properties;
+    private EmbeddingServiceImpl embeddingService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/embed", exchange -> {
+            Map<?, ?> body = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+            respond(exchange, 200, Map.of("embedding", vectorOf((String) body.get("text"))));
+        });
+        server.createContext("/embed_batch", exchange -> {
+            List<String> texts = (List<String>) objectMapper.readValue(exchange.getRequestBody(), Map.class).get("texts");
+            receivedBatches.add(texts);
+            if (texts.contains("c") && failFirstBatchContainingC.getAndSet(false)) {
+                respond(exchange, 500, Map.of("error", "model busy"));
+                return;
+            }
+            respond(exchange, 200, Map.of("embeddings", texts.stream().map(this::vectorOf).toList()));
+        });
+        server.start();
+
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        properties = new EmbeddingProperties();
+        properties.setUrl(baseUrl + "/embed");
+        properties.setBatchUrl(baseUrl + "/embed_batch");
+        properties.setBatchSize(2);
+        properties.setBatchParallelism(2);
+        properties.setMaxRetries(1);
+        properties.setQueryBatchWindowMs(50);
+        properties.setQueryMaxBatchSize(3);
+        properties.setVectorDim(2);
+        properties.getCache().setRedisEnabled(false);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        embeddingService = new EmbeddingServiceImpl(properties, new RetrievalProperties(), Schedulers.boundedElastic(),
+                new EmbeddingCacheServiceImpl(null, properties, meterRegistry), new EmbeddingClient(properties), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void embed_ShouldReturnSingleVector() {
+        assertArrayEquals(new float[]{97.0f, 1.0f}, embeddingService.embed("a"));
+    }
+
+    @Test
+    void embed_ShouldUseSingleEndpointWhenQueryBatchingDisabled() {
+        properties.setQueryBatchEnabled(false);
+
+        assertArrayEquals(new float[]{98.0f, 1.0f}, embeddingService.embed("b"));
+        assertTrue(receivedBatches.isEmpty());
+    }
+
+    @Test
+    void embed_ShouldMergeConcurrentQueriesIntoOneBatch() {
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        List<CompletableFuture<float[]>> futures = List.of("x", "y", "z").stream()
+                .map(text -> CompletableFuture.supplyAsync(() -> embeddingService.embed(text), callers))
+                .toList();
+
+        assertArrayEquals(new float[]{120.0f, 1.0f}, futures.get(0).join());
+        assertArrayEquals(new float[]{121.0f, 1.0f}, futures.get(1).join());
+        assertArrayEquals(new float[]{122.0f, 1.0f}, futures.get(2).join());
+        assertEquals(1, receivedBatches.size());
+        callers.shutdown();
+    }
+
+    @Test
+    void embed_ShouldFallBackToSingleRequestWhenMergedBatchFails() {
+        server.removeContext("/embed_batch");
+        server.createContext("/embed_batch", exchange -> respond(exchange, 500, Map.of("error", "bad input")));
+
+        assertArrayEquals(new float[]{120.0f, 1.0f}, embeddingService.embed("x"));
+    }
+
+    @Test
+    void embed_ShouldServeRepeatedTextFromCache() {
+        embeddingService.embed("q");
+        embeddingService.embed("  q ");
+
+        assertEquals(1, receivedBatches.size());
+    }
+
+    @Test
+    void embedAll_ShouldOnlyRequestTextsMissingFromCache() {
+        embeddingService.embed("a");
+        receivedBatches.clear();
+
+        List<float[]> vectors = embeddingService.embedAll(List.of("a", "b"));
+
+        assertEquals(List.of(List.of("b")), receivedBatches);
+        assertArrayEquals(new float[]{97.0f, 1.0f}, vectors.get(0));
+        assertArrayEquals(new float[]{98.0f, 1.0f}, vectors.get(1));
+    }
+
+    @Test
+    void embedAll_ShouldSplitIntoBatchesAndKeepInputOrder() {
+        failFirstBatchContainingC.set(false);
+
+        List<float[]> vectors = embeddingService.embedAll(List.of("a", "b", "c", "d", "e"));
+
+        assertEquals(3, receivedBatches.size());
+        assertTrue(receivedBatches.stream().allMatch(batch -> batch.size() <= 2));
+        assertArrayEquals(new float[]{97.0f, 1.0f}, vectors.get(0));
+        assertArrayEquals(new float[]{101.0f, 1.0f}, vectors.get(4));
+    }
+
+    @Test
+    void embedAll_ShouldRetryOnlyFailedBatch() {
+        List<float[]> vectors = embeddingService.embedAll(List.of("a", "b", "c", "d"));
+
+        // 第一轮两个批次，第二轮逐条重新提交失败批次中的文本
+        assertEquals(4, receivedBatches.size());
+        assertEquals(Set.of(List.of("c"), List.of("d")), Set.copyOf(receivedBatches.subList(2, 4)));
+        assertTrue(vectors.stream().allMatch(vector -> vector != null));
+        assertArrayEquals(new float[]{99.0f, 1.0f}, vectors.get(2));
+    }
+
+    @Test
+    void embedAll_ShouldLeaveNullOnlyForTextsThatKeepFailing() {
+        server.removeContext("/embed_batch");
+        server.createContext("/embed_batch", exchange -> {
+            List<String> texts = (List<String>) objectMapper.readValue(exchange.getRequestBody(), Map.class).get("texts");
+            if (texts.contains("c")) {
+                respond(exchange, 500, Map.of("error", "bad input"));
+                return;
+            }
+            respond(exchange, 200, Map.of("embeddings", texts.stream().map(this::vectorOf).toList()));
+        });
+
+        List<float[]> vectors = embeddingService.embedAll(List.of("a", "b", "c", "d"));
+
+        assertNotNull(vectors.get(0));
+        assertNotNull(vectors.get(1));
+        assertNull(vectors.get(2));
+        // d与c同批失败，逐条重试后成功
+        assertArrayEquals(new float[]{100.0f, 1.0f}, vectors.get(3));
+    }
+
+    private List<Float> vectorOf(String text) {
+        return List.of((float) text.charAt(0), 1.0f);
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
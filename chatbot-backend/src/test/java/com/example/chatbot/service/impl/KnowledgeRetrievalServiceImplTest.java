@@ -0,0 +1,155 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.dto.RetrievalResult;
+import com.example.chatbot.dto.RetrievalResult.Tier;
+import com.example.chatbot.dto.RetrievalResult.TierStatus;
+import com.example.chatbot.dto.ScoredDocument;
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.service.RedisService;
+import com.example.chatbot.service.VectorSearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KnowledgeRetrievalServiceImplTest {
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private VectorSearchService vectorSearchService;
+
+    @Mock
+    private KnowledgeBaseMapper knowledgeBaseMapper;
+
+    private RetrievalProperties properties;
+    private KnowledgeRetrievalServiceImpl retrievalService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RetrievalProperties();
+        properties.setDeadlineMs(300);
+        properties.setMinRequiredResults(3);
+        retrievalService = new KnowledgeRetrievalServiceImpl(redisService, vectorSearchService,
+                knowledgeBaseMapper, properties, Schedulers.boundedElastic());
+    }
+
+    @Test
+    void retrieve_ShouldReturnWithinDeadlineWhenTierIsSlow() {
+        when(vectorSearchService.embedQuery(anyString())).thenReturn(new float[]{0.1f, 0.2f});
+        when(redisService.searchKnowledge(anyList())).thenReturn(List.of(doc(1L)));
+        when(vectorSearchService.searchSimilarScored(any(float[].class), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return List.of(new ScoredDocument(doc(2L), 0.95));
+        });
+        when(knowledgeBaseMapper.retrieveByKeywords(anyList())).thenReturn(List.of(doc(3L)));
+
+        long start = System.currentTimeMillis();
+        RetrievalResult result = retrievalService.retrieve("测试问题", List.of("测试"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 1000, "retrieval should be bounded by the deadline");
+        Map<Tier, TierStatus> statuses = statusByTier(result);
+        assertEquals(TierStatus.COMPLETED, statuses.get(Tier.REDIS));
+        assertEquals(TierStatus.TIMED_OUT, statuses.get(Tier.VECTOR));
+        assertEquals(TierStatus.COMPLETED, statuses.get(Tier.DATABASE));
+        assertEquals(List.of(1L, 3L), result.documents().stream().map(KnowledgeBase::getId).toList());
+    }
+
+    @Test
+    void retrieve_ShouldCancelDatabaseTierButKeepVectorTierWhenRedisIsSufficient() {
+        when(redisService.searchKnowledge(anyList())).thenReturn(List.of(doc(1L), doc(2L), doc(3L)));
+        when(vectorSearchService.embedQuery(anyString())).thenReturn(new float[]{0.1f, 0.2f});
+        when(vectorSearchService.searchSimilarScored(any(float[].class), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return List.of(new ScoredDocument(doc(4L), 0.95));
+        });
+        // 被取消的检索层可能根本不会被调用
+        lenient().when(knowledgeBaseMapper.retrieveByKeywords(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return List.of(doc(5L));
+        });
+
+        RetrievalResult result = retrievalService.retrieve("测试问题", List.of("测试"));
+
+        Map<Tier, TierStatus> statuses = statusByTier(result);
+        assertEquals(TierStatus.COMPLETED, statuses.get(Tier.REDIS));
+        assertEquals(TierStatus.COMPLETED, statuses.get(Tier.VECTOR));
+        assertEquals(TierStatus.CANCELLED, statuses.get(Tier.DATABASE));
+        // 向量检索的第一名与Redis的第一名同分参与融合
+        assertEquals(List.of(1L, 4L, 2L, 3L), result.documents().stream().map(KnowledgeBase::getId).toList());
+    }
+
+    @Test
+    void retrieve_ShouldRecordFailedTier() {
+        when(redisService.searchKnowledge(anyList())).thenReturn(List.of());
+        when(vectorSearchService.embedQuery(anyString())).thenThrow(new RuntimeException("embedding down"));
+        when(knowledgeBaseMapper.retrieveByKeywords(anyList())).thenReturn(List.of(doc(7L)));
+
+        RetrievalResult result = retrievalService.retrieve("测试问题", List.of("测试"));
+
+        assertEquals(TierStatus.FAILED, statusByTier(result).get(Tier.VECTOR));
+        assertNull(result.queryVector());
+        assertEquals(List.of(7L), result.documents().stream().map(KnowledgeBase::getId).toList());
+    }
+
+    @Test
+    void retrieve_ShouldFuseTiersByRankAndKeepTopK() {
+        properties.setTopK(2);
+        when(redisService.searchKnowledge(anyList())).thenReturn(List.of());
+        when(vectorSearchService.embedQuery(anyString())).thenReturn(new float[]{0.1f, 0.2f});
+        when(vectorSearchService.searchSimilarScored(any(float[].class), anyInt()))
+                .thenReturn(List.of(new ScoredDocument(doc(5L), 0.97), new ScoredDocument(doc(6L), 0.93)));
+        when(knowledgeBaseMapper.retrieveByKeywords(anyList())).thenReturn(List.of(doc(4L), doc(6L)));
+
+        RetrievalResult result = retrievalService.retrieve("测试问题", List.of("测试"));
+
+        // 文档6同时被向量和数据库命中，排在各层第一名之前
+        assertEquals(List.of(6L, 5L), result.documents().stream().map(KnowledgeBase::getId).toList());
+    }
+
+    @Test
+    void retrieveAsync_ShouldStartOnlyWhenSubscribed() {
+        when(redisService.searchKnowledge(anyList())).thenReturn(List.of(doc(1L), doc(2L), doc(3L)));
+        lenient().when(vectorSearchService.embedQuery(anyString())).thenReturn(new float[]{0.1f, 0.2f});
+
+        Mono<RetrievalResult> pending = retrievalService.retrieveAsync("测试问题", List.of("测试"));
+        verifyNoInteractions(redisService, vectorSearchService, knowledgeBaseMapper);
+
+        RetrievalResult result = pending.block();
+
+        assertNotNull(result);
+        assertEquals(3, result.documents().size());
+    }
+
+    private Map<Tier, TierStatus> statusByTier(RetrievalResult result) {
+        return result.tiers().stream()
+                .collect(Collectors.toMap(RetrievalResult.TierReport::tier, RetrievalResult.TierReport::status));
+    }
+
+    private KnowledgeBase doc(Long id) {
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setId(id);
+        kb.setTitle("标题" + id);
+        kb.setContent("内容" + id);
+        kb.setCategory("测试");
+        return kb;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.service.AnswerCacheService;
+import com.example.chatbot.service.RedisDistributedLock;
+import com.example.chatbot.service.RedisService;
+import com.example.chatbot.service.VectorSearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量导入：先写数据库再整批向量化，向量化失败的条目从数据库撤销
+ */
+@ExtendWith(MockitoExtension.class)
+class KnowledgeServiceImplTest {
+
+    @Mock
+    private KnowledgeBaseMapper knowledgeBaseMapper;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private VectorSearchService vectorSearchService;
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private RedisDistributedLock distributedLock;
+
+    @Mock
+    private AnswerCacheService answerCacheService;
+
+    private KnowledgeServiceImpl knowledgeService;
+
+    @BeforeEach
+    void setUp() {
+        knowledgeService = new KnowledgeServiceImpl(knowledgeBaseMapper, rabbitTemplate, vectorSearchService,
+                redisService, distributedLock, answerCacheService);
+        AtomicLong ids = new AtomicLong(100);
+        when(knowledgeBaseMapper.insert(any(KnowledgeBase.class))).thenAnswer(invocation -> {
+            invocation.<KnowledgeBase>getArgument(0).setId(ids.incrementAndGet());
+            return 1;
+        });
+    }
+
+    @Test
+    void importKnowledge_ShouldDeleteFailedEntriesAndCountTheRest() {
+        when(vectorSearchService.indexDocuments(anyList())).thenReturn(List.of(102L));
+
+        int imported = knowledgeService.importKnowledge(List.of(doc("a"), doc("b"), doc("c")));
+
+        assertEquals(2, imported);
+        verify(knowledgeBaseMapper).deleteByIds(List.of(102L));
+    }
+
+    @Test
+    void importKnowledge_ShouldDeleteAllSavedRowsWhenIndexingThrows() {
+        RuntimeException failure = new RuntimeException("milvus down");
+        when(vectorSearchService.indexDocuments(anyList())).thenThrow(failure);
+
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> knowledgeService.importKnowledge(List.of(doc("a"), doc("b"))));
+
+        assertSame(failure, thrown);
+        verify(knowledgeBaseMapper).deleteByIds(List.of(101L, 102L));
+    }
+
+    private static KnowledgeBase doc(String title) {
+        KnowledgeBase doc = new KnowledgeBase();
+        doc.setTitle(title);
+        doc.setContent("内容");
+        return doc;
+    }
+}
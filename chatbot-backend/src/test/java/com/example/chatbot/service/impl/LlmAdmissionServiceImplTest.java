@@ -0,0 +1,81 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.exception.ModelOverloadedException;
+import com.example.chatbot.properties.ModelProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmAdmissionServiceImplTest {
+
+    private LlmAdmissionServiceImpl admissionService;
+
+    @BeforeEach
+    void setUp() {
+        ModelProperties.ModelOption option = new ModelProperties.ModelOption();
+        option.setMaxConcurrency(1);
+        option.setMaxQueueSize(3);
+        option.setMaxQueueWaitMs(500);
+        ModelProperties properties = new ModelProperties();
+        properties.setOptions(Map.of("qwen3", option));
+        admissionService = new LlmAdmissionServiceImpl(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void admit_ShouldRotateBetweenUsers() {
+        Sinks.Empty<Void> gate = Sinks.empty();
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        // 第一个请求占住唯一的许可，其余请求排队
+        Flux<String> running = admissionService.admit("qwen3", 1L, () ->
+                gate.asMono().thenMany(Flux.just("A0")).doOnSubscribe(s -> order.add("A0")));
+        Flux<String> a1 = admissionService.admit("qwen3", 1L, () -> Flux.just("A1").doOnSubscribe(s -> order.add("A1")));
+        Flux<String> a2 = admissionService.admit("qwen3", 1L, () -> Flux.just("A2").doOnSubscribe(s -> order.add("A2")));
+        Flux<String> b1 = admissionService.admit("qwen3", 2L, () -> Flux.just("B1").doOnSubscribe(s -> order.add("B1")));
+
+        running.subscribe();
+        a1.subscribe();
+        a2.subscribe();
+        b1.subscribe();
+        gate.tryEmitEmpty();
+
+        assertEquals(List.of("A0", "A1", "B1", "A2"), order);
+    }
+
+    @Test
+    void checkCapacity_ShouldRejectWhenQueueIsFull() {
+        Sinks.Empty<Void> gate = Sinks.empty();
+        admissionService.admit("qwen3", 1L, () -> gate.asMono().thenMany(Flux.just("x"))).subscribe();
+        for (int i = 0; i < 3; i++) {
+            admissionService.admit("qwen3", 2L, () -> Flux.just("y")).subscribe();
+        }
+
+        ModelOverloadedException ex = assertThrows(ModelOverloadedException.class,
+                () -> admissionService.checkCapacity("qwen3"));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+        gate.tryEmitEmpty();
+    }
+
+    @Test
+    void admit_ShouldFailWhenQueueWaitExceeded() {
+        Sinks.Empty<Void> gate = Sinks.empty();
+        admissionService.admit("qwen3", 1L, () -> gate.asMono().thenMany(Flux.just("x"))).subscribe();
+
+        Flux<String> waiting = admissionService.admit("qwen3", 2L, () -> Flux.just("y"));
+
+        assertThrows(ModelOverloadedException.class, () -> waiting.blockLast(Duration.ofSeconds(5)));
+
+        // 超时的请求不占用许可，释放后新请求可以立即执行
+        gate.tryEmitEmpty();
+        assertEquals("z", admissionService.admit("qwen3", 3L, () -> Flux.just("z")).blockLast(Duration.ofSeconds(5)));
+    }
+}
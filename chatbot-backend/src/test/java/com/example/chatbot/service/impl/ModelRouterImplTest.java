@@ -0,0 +1,121 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.dto.ModelRoute;
+import com.example.chatbot.properties.ModelProperties;
+import com.example.chatbot.properties.ModelRoutingProperties;
+import com.example.chatbot.service.LlmAdmissionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ModelRouterImplTest {
+
+    @Mock
+    private LlmAdmissionService llmAdmissionService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ModelRouterImpl modelRouter;
+
+    @BeforeEach
+    void setUp() {
+        ModelProperties modelProperties = new ModelProperties();
+        modelProperties.setOptions(Map.of(
+                "qwen3", option(2048),
+                "deepseekR1", option(4096)));
+        ModelRoutingProperties properties = new ModelRoutingProperties();
+        properties.setTtftSloMs(1000);
+        properties.setEwmaAlpha(1.0);
+        properties.setFallbacks(Map.of("deepseekR1", List.of("qwen3")));
+        properties.setDegradedMaxTokens(512);
+        properties.setNoThinkModels(List.of("qwen3"));
+        meterRegistry = new SimpleMeterRegistry();
+        modelRouter = new ModelRouterImpl(modelProperties, properties, llmAdmissionService, meterRegistry);
+        lenient().when(llmAdmissionService.pendingCount(anyString())).thenReturn(0);
+    }
+
+    @Test
+    void route_ShouldKeepRequestedModelWithinSlo() {
+        ModelRoute route = modelRouter.route("deepseekR1");
+
+        assertEquals("deepseekR1", route.modelId());
+        assertFalse(route.degraded());
+    }
+
+    @Test
+    void route_ShouldFallBackWhenRequestedModelIsQueued() {
+        // deepseekR1每次生成耗时5秒，前面排了2个请求
+        modelRouter.stats("deepseekR1").durationMs.update(5000);
+        when(llmAdmissionService.pendingCount("deepseekR1")).thenReturn(2);
+
+        ModelRoute route = modelRouter.route("deepseekR1");
+
+        assertEquals("qwen3", route.modelId());
+        assertEquals("deepseekR1", route.requestedModelId());
+        assertNull(route.maxTokens());
+        assertFalse(route.skipReasoning());
+    }
+
+    @Test
+    void route_ShouldDegradeWhenNoCandidateMeetsSlo() {
+        modelRouter.stats("deepseekR1").ttftMs.update(3000);
+        modelRouter.stats("qwen3").ttftMs.update(2000);
+
+        ModelRoute route = modelRouter.route("deepseekR1");
+
+        assertEquals("qwen3", route.modelId());
+        assertEquals(512, route.maxTokens());
+        assertTrue(route.skipReasoning());
+        assertEquals(1.0, meterRegistry.counter("chat.model.route.degraded",
+                "requested", "deepseekR1", "model", "qwen3", "reason", "degraded").count());
+    }
+
+    @Test
+    void route_ShouldReturnToRequestedModelAsTtftEstimateDecays() {
+        AtomicLong now = new AtomicLong();
+        modelRouter.clock = now::get;
+        // 默认半衰期30秒，4000ms的首字延迟两个半衰期后降到SLO以内
+        modelRouter.stats("deepseekR1").ttftMs.update(4000);
+        assertEquals("qwen3", modelRouter.route("deepseekR1").modelId());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertEquals("qwen3", modelRouter.route("deepseekR1").modelId());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        ModelRoute route = modelRouter.route("deepseekR1");
+        assertEquals("deepseekR1", route.modelId());
+        assertFalse(route.degraded());
+    }
+
+    @Test
+    void observe_ShouldRecordTimeToFirstToken() {
+        Flux<String> tokens = Flux.just("a", "b", "c");
+
+        List<String> received = modelRouter.observe("qwen3", tokens).collectList().block();
+
+        assertEquals(List.of("a", "b", "c"), received);
+        assertTrue(modelRouter.stats("qwen3").ttftMs.get() >= 0);
+        assertTrue(meterRegistry.find("chat.model.ttft.ewma").tag("model", "qwen3").gauge() != null);
+    }
+
+    private ModelProperties.ModelOption option(int maxTokens) {
+        ModelProperties.ModelOption option = new ModelProperties.ModelOption();
+        option.setMaxTokens(maxTokens);
+        option.setMaxConcurrency(1);
+        return option;
+    }
+}
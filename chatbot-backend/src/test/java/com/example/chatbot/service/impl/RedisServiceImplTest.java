@@ -0,0 +1,98 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.util.KeywordExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量写入Redis：脚本参数布局，以及脚本返回的变化序号到文档的映射
+ */
+@ExtendWith(MockitoExtension.class)
+class RedisServiceImplTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private KeywordExtractor keywordExtractor;
+
+    @Mock
+    private RedisOperations<String, Object> operations;
+
+    @Mock
+    private SetOperations<String, Object> setOperations;
+
+    private RedisServiceImpl redisService;
+
+    @BeforeEach
+    void setUp() {
+        redisService = new RedisServiceImpl(redisTemplate, keywordExtractor);
+    }
+
+    @Test
+    void saveDocsToRedis_ShouldPassKeysAndMemberValuePairsInDocumentOrder() {
+        KnowledgeBase doc1 = doc(11L, "Docker");
+        KnowledgeBase doc2 = doc(12L, "Redis");
+
+        redisService.saveDocsToRedis(List.of(doc1, doc2));
+
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), keys.capture(), args.capture());
+        assertEquals(List.of("hot_knowledge", "knowledge_data:11", "knowledge_data:12"), keys.getValue());
+        // ARGV[1]=热知识最大数量 ARGV[2]=过期时间（7天），之后每篇文档依次为集合成员和文档
+        assertEquals(Arrays.asList(50, 604_800L, "11", doc1, "12", doc2), Arrays.asList(args.getValue()));
+        // 脚本没有返回变化的文档，不重建关键词索引
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+        verifyNoInteractions(keywordExtractor);
+    }
+
+    @Test
+    void saveDocsToRedis_ShouldIndexKeywordsOnlyForDocumentsReportedAsChanged() {
+        KnowledgeBase doc1 = doc(11L, "Docker");
+        KnowledgeBase doc2 = doc(12L, "Redis");
+        KnowledgeBase doc3 = doc(13L, "Milvus");
+        // 脚本返回从1开始的文档序号，Lua整数以Long返回
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(1L, 3L));
+        when(keywordExtractor.extractKeywordsFromArticle(anyString(), eq(5)))
+                .thenAnswer(invocation -> List.of(invocation.<String>getArgument(0).split(" ")[0]));
+
+        redisService.saveDocsToRedis(List.of(doc1, doc2, doc3));
+
+        ArgumentCaptor<SessionCallback<Object>> pipeline = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(redisTemplate).executePipelined(pipeline.capture());
+        when(operations.opsForSet()).thenReturn(setOperations);
+        pipeline.getValue().execute(operations);
+
+        verify(setOperations).add("keyword_index:docker", "11");
+        verify(setOperations).add("keyword_index:milvus", "13");
+        verifyNoMoreInteractions(setOperations);
+        verify(keywordExtractor, never()).extractKeywordsFromArticle(startsWith("Redis"), anyInt());
+    }
+
+    private static KnowledgeBase doc(Long id, String title) {
+        KnowledgeBase doc = new KnowledgeBase();
+        doc.setId(id);
+        doc.setTitle(title);
+        doc.setContent("内容");
+        return doc;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.dto.ScoredDocument;
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.service.EmbeddingService;
+import com.example.chatbot.service.RedisDistributedLock;
+import com.example.chatbot.service.RedisService;
+import com.example.milvus.MilvusProperties;
+import com.example.milvus.VectorHit;
+import com.example.milvus.VectorStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 相似检索合并：并发查询合并为一次多向量检索，结果按下标回到各自的调用方
+ */
+@ExtendWith(MockitoExtension.class)
+class VectorSearchServiceImplBatchTest {
+
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private KnowledgeBaseMapper knowledgeBaseMapper;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private RedisService redisService;
+
+    @Mock
+    private RedisDistributedLock distributedLock;
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    private final MilvusProperties milvusProperties = new MilvusProperties();
+    private VectorSearchServiceImpl vectorSearchService;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        vectorSearchService = new VectorSearchServiceImpl(vectorStore, knowledgeBaseMapper, redisService,
+                distributedLock, embeddingService, new EmbeddingProperties(), milvusProperties, new RetrievalProperties(),
+                new SimpleMeterRegistry(), Schedulers.boundedElastic());
+        ReflectionTestUtils.setField(vectorSearchService, "scoreThreshold", 0.5);
+        ReflectionTestUtils.setField(vectorSearchService, "searchBatchEnabled", true);
+        ReflectionTestUtils.setField(vectorSearchService, "searchBatchWindowMs", 50L);
+        ReflectionTestUtils.setField(vectorSearchService, "searchMaxBatchSize", 16);
+        callers = Executors.newFixedThreadPool(6);
+
+        // 每个查询向量的第一个分量就是期望命中的文档ID
+        lenient().when(vectorStore.searchBatch(anyString(), anyList(), anyInt())).thenAnswer(invocation -> {
+            List<float[]> vectors = invocation.getArgument(1);
+            return vectors.stream()
+                    .map(vector -> List.of(new VectorHit((long) vector[0], 0.9f)))
+                    .toList();
+        });
+        when(knowledgeBaseMapper.findByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(VectorSearchServiceImplBatchTest::doc).toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void searchSimilarScored_ShouldMergeConcurrentQueriesIntoOneMultiVectorSearch() {
+        List<CompletableFuture<List<ScoredDocument>>> futures = IntStream.rangeClosed(1, 6)
+                .mapToObj(i -> CompletableFuture.supplyAsync(
+                        () -> vectorSearchService.searchSimilarScored(new float[]{i, 0.5f}, 5), callers))
+                .toList();
+
+        for (int i = 0; i < futures.size(); i++) {
+            List<ScoredDocument> results = futures.get(i).join();
+            assertEquals(1, results.size());
+            assertEquals(i + 1L, results.get(0).document().getId());
+        }
+        ArgumentCaptor<List<float[]>> vectors = ArgumentCaptor.forClass(List.class);
+        verify(vectorStore, times(1)).searchBatch(eq("knowledge_base"), vectors.capture(), eq(5));
+        assertEquals(6, vectors.getValue().size());
+        verify(vectorStore, never()).search(anyString(), any(float[].class), anyInt());
+    }
+
+    @Test
+    void searchSimilarScored_ShouldNotMergeQueriesWithDifferentTopK() {
+        CompletableFuture<List<ScoredDocument>> top3 = CompletableFuture.supplyAsync(
+                () -> vectorSearchService.searchSimilarScored(new float[]{1, 0.5f}, 3), callers);
+        CompletableFuture<List<ScoredDocument>> top5 = CompletableFuture.supplyAsync(
+                () -> vectorSearchService.searchSimilarScored(new float[]{2, 0.5f}, 5), callers);
+
+        assertEquals(1L, top3.join().get(0).document().getId());
+        assertEquals(2L, top5.join().get(0).document().getId());
+        verify(vectorStore).searchBatch(eq("knowledge_base"), anyList(), eq(3));
+        verify(vectorStore).searchBatch(eq("knowledge_base"), anyList(), eq(5));
+    }
+
+    @Test
+    void searchSimilarScored_ShouldSearchDirectlyInEmbeddedMode() {
+        milvusProperties.setMode(MilvusProperties.Mode.EMBEDDED);
+        when(vectorStore.search(anyString(), any(float[].class), anyInt()))
+                .thenReturn(List.of(new VectorHit(4L, 0.9f)));
+
+        List<ScoredDocument> results = vectorSearchService.searchSimilarScored(new float[]{4, 0.5f}, 5);
+
+        assertEquals(4L, results.get(0).document().getId());
+        verify(vectorStore, never()).searchBatch(anyString(), anyList(), anyInt());
+    }
+
+    private static KnowledgeBase doc(Long id) {
+        KnowledgeBase doc = new KnowledgeBase();
+        doc.setId(id);
+        doc.setTitle("文档" + id);
+        return doc;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.chatbot.service.impl;
+
+import com.example.chatbot.entity.KnowledgeBase;
+import com.example.chatbot.mapper.KnowledgeBaseMapper;
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.example.chatbot.properties.RetrievalProperties;
+import com.example.chatbot.service.EmbeddingService;
+import com.example.chatbot.service.RedisDistributedLock;
+import com.example.chatbot.service.RedisService;
+import com.example.milvus.MilvusProperties;
+import com.example.milvus.VectorStore;
+import com.example.milvus.embedded.EmbeddedVectorStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 向量写入路径：更新走upsert，删除和更新累积墓碑，超过阈值后压缩
+ */
+@ExtendWith(MockitoExtension.class)
+class VectorSearchServiceImplMutationTest {
+
+    private static final String TOMBSTONE_COUNT_KEY = "vector:tombstones:knowledge_base";
+
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private KnowledgeBaseMapper knowledgeBaseMapper;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private RedisService redisService;
+
+    @Mock
+    private RedisDistributedLock distributedLock;
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    private ValueOperations<String, Object> valueOperations;
+    private final MilvusProperties milvusProperties = new MilvusProperties();
+    private VectorSearchServiceImpl vectorSearchService;
+
+    @BeforeEach
+    void setUp() {
+        vectorSearchService = new VectorSearchServiceImpl(vectorStore, knowledgeBaseMapper, redisService,
+                distributedLock, embeddingService, new EmbeddingProperties(), milvusProperties, new RetrievalProperties(),
+                new SimpleMeterRegistry(), Schedulers.boundedElastic());
+        ReflectionTestUtils.setField(vectorSearchService, "compactionTombstoneThreshold", 100L);
+        valueOperations = redisService.getRedisTemplate().opsForValue();
+        lenient().when(distributedLock.tryLock(anyString(), anyLong(), any(TimeUnit.class))).thenReturn("lock");
+    }
+
+    @Test
+    void updateDocument_ShouldUpsertUnderOneLockWithoutDeleting() {
+        float[] vector = {0.1f, 0.2f};
+        when(embeddingService.embed("标题 内容")).thenReturn(vector);
+
+        vectorSearchService.updateDocument(doc(7L));
+
+        verify(vectorStore).upsert("knowledge_base", List.of(7L), List.of(vector));
+        verify(vectorStore, never()).delete(anyString(), anyList());
+        verify(vectorStore, never()).insert(anyString(), anyList(), anyList());
+        verify(distributedLock, times(1)).tryLock(eq("vector:index:7"), anyLong(), any(TimeUnit.class));
+        verify(valueOperations).increment(TOMBSTONE_COUNT_KEY, 1);
+    }
+
+    @Test
+    void deleteDocuments_ShouldDeleteAllIdsInOneCallAndCountTombstones() {
+        vectorSearchService.deleteDocuments(List.of(1L, 2L, 3L));
+
+        verify(vectorStore, times(1)).delete("knowledge_base", List.of(1L, 2L, 3L));
+        verify(valueOperations).increment(TOMBSTONE_COUNT_KEY, 3);
+        verifyNoInteractions(distributedLock);
+    }
+
+    @Test
+    void compactIfNeeded_ShouldSkipBelowThreshold() {
+        when(valueOperations.increment(TOMBSTONE_COUNT_KEY, 0)).thenReturn(99L);
+
+        assertFalse(vectorSearchService.compactIfNeeded());
+        verify(vectorStore, never()).compact(anyString());
+    }
+
+    @Test
+    void compactIfNeeded_ShouldCompactAndSubtractCountedTombstones() {
+        when(valueOperations.increment(TOMBSTONE_COUNT_KEY, 0)).thenReturn(150L);
+
+        assertTrue(vectorSearchService.compactIfNeeded());
+        verify(vectorStore).compact("knowledge_base");
+        verify(valueOperations).decrement(TOMBSTONE_COUNT_KEY, 150L);
+        verify(distributedLock).unlock("vector:compaction:knowledge_base", "lock");
+    }
+
+    @Test
+    void compactIfNeeded_ShouldSkipWhenAnotherInstanceHoldsTheLock() {
+        when(valueOperations.increment(TOMBSTONE_COUNT_KEY, 0)).thenReturn(150L);
+        when(distributedLock.tryLock(eq("vector:compaction:knowledge_base"), anyLong(), any(TimeUnit.class)))
+                .thenReturn(null);
+
+        assertFalse(vectorSearchService.compactIfNeeded());
+        verify(vectorStore, never()).compact(anyString());
+        verify(valueOperations, never()).decrement(anyString(), anyLong());
+    }
+
+    @Test
+    void deleteDocument_ShouldUseTheSameLockAsUpdate() {
+        vectorSearchService.deleteDocument(7L);
+
+        verify(distributedLock).tryLock(eq("vector:index:7"), anyLong(), any(TimeUnit.class));
+        verify(vectorStore).delete("knowledge_base", List.of(7L));
+    }
+
+    @Test
+    void compactIfNeeded_ShouldCountAndLockPerInstanceInEmbeddedMode() {
+        milvusProperties.setMode(MilvusProperties.Mode.EMBEDDED);
+        vectorSearchService.deleteDocuments(LongStream.range(0, 100).boxed().toList());
+
+        assertTrue(vectorSearchService.compactIfNeeded());
+        assertFalse(vectorSearchService.compactIfNeeded());
+        verify(vectorStore, times(1)).compact("knowledge_base");
+        verifyNoInteractions(distributedLock);
+        verify(valueOperations, never()).increment(anyString(), anyLong());
+    }
+
+    @Test
+    void reconcileEmbeddedIndex_ShouldReindexMissingDocumentsAndDropDeletedOnes(@TempDir Path dataDir) {
+        milvusProperties.setMode(MilvusProperties.Mode.EMBEDDED);
+        milvusProperties.getEmbedded().setDataDir(dataDir.toString());
+        milvusProperties.getEmbedded().setFlushIntervalSeconds(0);
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(milvusProperties)) {
+            store.createCollectionIfAbsent("knowledge_base", 2);
+            // 1和2已写回磁盘；之后数据库删除了2、新增了3，但进程在下一次写回前崩溃
+            store.insert("knowledge_base", List.of(1L, 2L), List.of(new float[]{1, 0}, new float[]{0, 1}));
+            store.flush();
+            VectorSearchServiceImpl service = new VectorSearchServiceImpl(store, knowledgeBaseMapper, redisService,
+                    distributedLock, embeddingService, new EmbeddingProperties(), milvusProperties,
+                    new RetrievalProperties(), new SimpleMeterRegistry(), Schedulers.boundedElastic());
+            KnowledgeBase unchanged = doc(1L);
+            unchanged.setUpdatedAt(LocalDateTime.now().minusHours(1));
+            KnowledgeBase added = doc(3L);
+            added.setUpdatedAt(LocalDateTime.now());
+            when(knowledgeBaseMapper.selectList(any())).thenReturn(List.of(unchanged, added));
+            when(knowledgeBaseMapper.findByIds(List.of(3L))).thenReturn(List.of(doc(3L)));
+            when(embeddingService.embedAll(List.of("标题 内容"))).thenReturn(List.of(new float[]{1, 1}));
+
+            assertEquals(2, service.reconcileEmbeddedIndex(store));
+
+            assertEquals(Set.of(1L, 3L), store.ids("knowledge_base"));
+            verify(knowledgeBaseMapper, times(1)).findByIds(anyList());
+        }
+    }
+
+    private static KnowledgeBase doc(Long id) {
+        KnowledgeBase doc = new KnowledgeBase();
+        doc.setId(id);
+        doc.setTitle("标题");
+        doc.setContent("内容");
+        return doc;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.dto.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatFrameEncoderTest {
+
+    private final ObjectWriter writer = new ObjectMapper().writerFor(ChatResponse.class);
+
+    @Test
+    void encode_ShouldMatchFullSerializationForEveryFrameOfTheStream() throws Exception {
+        ChatFrameEncoder encoder = new ChatFrameEncoder(writer);
+
+        for (String message : new String[]{"你好", "带\"引号\"和\\反斜杠", "换行\n制表\t", "😀 emoji", ""}) {
+            ChatResponse response = frame(message, "s-1", "qwen3", 7);
+            assertEquals(writer.writeValueAsString(response), encoder.encode(response));
+        }
+    }
+
+    @Test
+    void encode_ShouldFallBackWhenConstantFieldsChange() throws Exception {
+        ChatFrameEncoder encoder = new ChatFrameEncoder(writer);
+        encoder.encode(frame("a", "s-1", "qwen3", 1));
+
+        ChatResponse otherModel = frame("b", "s-1", "deepseekR1", 2);
+        ChatResponse noSequence = ChatResponse.builder().message("c").sessionId("s-1").build();
+
+        assertEquals(writer.writeValueAsString(otherModel), encoder.encode(otherModel));
+        assertEquals(writer.writeValueAsString(noSequence), encoder.encode(noSequence));
+    }
+
+    @Test
+    void encode_ShouldNotConfuseFieldNamesInsideValues() throws Exception {
+        ChatFrameEncoder encoder = new ChatFrameEncoder(writer);
+        ChatResponse response = frame("x", "\"message\":\"\u0001\"", "qwen3", 3);
+
+        assertEquals(writer.writeValueAsString(response), encoder.encode(response));
+        ChatResponse next = frame("y", "\"message\":\"\u0001\"", "qwen3", 4);
+        assertEquals(writer.writeValueAsString(next), encoder.encode(next));
+    }
+
+    private static ChatResponse frame(String message, String sessionId, String modelId, long sequence) {
+        return ChatResponse.builder()
+                .message(message)
+                .sessionId(sessionId)
+                .modelId(modelId)
+                .sequence(Long.toString(sequence))
+                .build();
+    }
+}
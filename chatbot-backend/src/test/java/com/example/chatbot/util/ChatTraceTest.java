@@ -0,0 +1,41 @@
+package com.example.chatbot.util;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatTraceTest {
+
+    @Test
+    void record_ShouldPublishTimerPerStage() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatTrace trace = new ChatTrace(registry);
+
+        String keywords = trace.time("keywords", () -> "docker");
+        trace.record("retrieval", TimeUnit.MILLISECONDS.toNanos(120));
+
+        assertEquals("docker", keywords);
+        Timer retrieval = registry.find(ChatTrace.METRIC).tag("stage", "retrieval").timer();
+        assertNotNull(retrieval);
+        assertEquals(1, retrieval.count());
+        assertEquals(120, retrieval.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertNotNull(registry.find(ChatTrace.METRIC).tag("stage", "keywords").timer());
+    }
+
+    @Test
+    void serverTiming_ShouldListStagesInOrderAndAccumulateRepeats() {
+        ChatTrace trace = new ChatTrace(new SimpleMeterRegistry());
+        trace.record("clean", TimeUnit.MICROSECONDS.toNanos(100));
+        trace.record("cache_populate", TimeUnit.MILLISECONDS.toNanos(2));
+        trace.record("cache_populate", TimeUnit.MILLISECONDS.toNanos(3));
+
+        String header = trace.serverTiming();
+
+        assertTrue(header.startsWith("clean;dur=0.1, cache_populate;dur=5.0, total;dur="), header);
+        assertTrue(trace.summary().startsWith("clean=0.1ms, cache_populate=5.0ms, total="));
+    }
+}
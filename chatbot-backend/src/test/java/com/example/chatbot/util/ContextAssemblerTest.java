@@ -0,0 +1,81 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.dto.AssembledContext;
+import com.example.chatbot.entity.KnowledgeBase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextAssemblerTest {
+
+    private ContextAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        assembler = new ContextAssembler(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void estimate_ShouldCountCjkCharsAndLatinWords() {
+        assertEquals(4, TokenEstimator.estimate("安装步骤"));
+        assertEquals(2, TokenEstimator.estimate("docker"));
+        assertEquals(0, TokenEstimator.estimate("  \n "));
+    }
+
+    @Test
+    void assemble_ShouldKeepEverythingWithinBudget() {
+        KnowledgeBase doc = doc(1L, "Docker", "Docker是容器引擎。\n安装后执行docker run。");
+
+        AssembledContext context = assembler.assemble(List.of(doc), List.of("Docker"), 1024);
+
+        assertTrue(context.text().contains("Docker是容器引擎。"));
+        assertTrue(context.text().contains("安装后执行docker run。"));
+        assertEquals(2, context.passages());
+        assertTrue(context.tokens() <= 1024);
+    }
+
+    @Test
+    void assemble_ShouldPreferKeywordParagraphsAndStayUnderBudget() {
+        String filler = "这是一段与问题无关的很长的背景介绍内容。".repeat(20);
+        KnowledgeBase doc = doc(1L, "运维手册", filler + "\nRedis集群扩容需要先迁移槽位。\n" + filler + "补充");
+
+        AssembledContext context = assembler.assemble(List.of(doc), List.of("Redis", "扩容"), 60);
+
+        assertTrue(context.text().contains("Redis集群扩容需要先迁移槽位。"));
+        assertTrue(context.tokens() <= 60);
+        assertTrue(context.savedTokens() > 0);
+    }
+
+    @Test
+    void assemble_ShouldDropDuplicatePassagesAcrossDocuments() {
+        KnowledgeBase first = doc(1L, "文档一", "重复的段落内容\n第一篇独有内容");
+        KnowledgeBase second = doc(2L, "文档二", "重复的段落内容\n第二篇独有内容");
+
+        AssembledContext context = assembler.assemble(List.of(first, second), List.of(), 1024);
+
+        assertEquals(1, context.text().split("重复的段落内容", -1).length - 1);
+        assertEquals(3, context.passages());
+    }
+
+    @Test
+    void assemble_ShouldTruncateOversizedTopPassage() {
+        KnowledgeBase doc = doc(1L, "长文", "超长段落".repeat(200));
+
+        AssembledContext context = assembler.assemble(List.of(doc), List.of(), 50);
+
+        assertEquals(1, context.passages());
+        assertTrue(context.tokens() <= 50);
+    }
+
+    private KnowledgeBase doc(Long id, String title, String content) {
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setId(id);
+        kb.setTitle(title);
+        kb.setContent(content);
+        return kb;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.properties.EmbeddingProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private EmbeddingProperties properties;
+    private EmbeddingClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 模拟向量化服务：请求声明接受二进制时返回小端float32，否则返回JSON
+        server.createContext("/embed", exchange -> {
+            String text = (String) objectMapper.readValue(exchange.getRequestBody(), Map.class).get("text");
+            respond(exchange, List.of(vectorOf(text)), "embedding");
+        });
+        server.createContext("/embed_batch", exchange -> {
+            List<String> texts = (List<String>) objectMapper.readValue(exchange.getRequestBody(), Map.class).get("texts");
+            respond(exchange, texts.stream().map(this::vectorOf).toList(), "embeddings");
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        properties = new EmbeddingProperties();
+        properties.setUrl(baseUrl + "/embed");
+        properties.setBatchUrl(baseUrl + "/embed_batch");
+        properties.setReadTimeoutMs(200);
+        client = new EmbeddingClient(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void embed_ShouldDecodeBinaryResponse() {
+        assertArrayEquals(new float[]{97f, 0.5f, -1.25f}, client.embed("a"));
+    }
+
+    @Test
+    void embedBatch_ShouldSplitBinaryResponseInRequestOrder() {
+        List<float[]> vectors = client.embedBatch(List.of("a", "b", "c"));
+
+        assertEquals(3, vectors.size());
+        assertArrayEquals(new float[]{98f, 0.5f, -1.25f}, vectors.get(1));
+        assertArrayEquals(new float[]{99f, 0.5f, -1.25f}, vectors.get(2));
+    }
+
+    @Test
+    void decodeBinary_ShouldRejectPayloadThatDoesNotMatchCount() {
+        byte[] payload = VectorCodec.toBytes(new float[]{1f, 2f, 3f});
+
+        assertThrows(IllegalStateException.class, () -> EmbeddingClient.decodeBinary(payload, 2));
+    }
+
+    @Test
+    void embed_ShouldFailFastWhenResponseExceedsReadTimeout() {
+        properties.setUrl(properties.getUrl().replace("/embed", "/slow"));
+
+        long start = System.currentTimeMillis();
+        assertThrows(RuntimeException.class, () -> client.embed("a"));
+        assertTrue(System.currentTimeMillis() - start < 900, "request should be bounded by the read timeout");
+    }
+
+    @Test
+    void embedBatch_ShouldUseGivenReadTimeout() {
+        properties.setBatchUrl(properties.getBatchUrl().replace("/embed_batch", "/slow"));
+        properties.setBatchReadTimeoutMs(60_000);
+
+        long start = System.currentTimeMillis();
+        assertThrows(RuntimeException.class, () -> client.embedBatch(List.of("a"), properties.getReadTimeoutMs()));
+        assertTrue(System.currentTimeMillis() - start < 900, "request should be bounded by the given timeout");
+    }
+
+    private float[] vectorOf(String text) {
+        return new float[]{text.charAt(0), 0.5f, -1.25f};
+    }
+
+    private void respond(HttpExchange exchange, List<float[]> vectors, String jsonField) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        byte[] body;
+        if (accept != null && accept.contains(EmbeddingClient.BINARY_MEDIA_TYPE)) {
+            body = new byte[0];
+            for (float[] vector : vectors) {
+                byte[] bytes = VectorCodec.toBytes(vector);
+                byte[] merged = new byte[body.length + bytes.length];
+                System.arraycopy(body, 0, merged, 0, body.length);
+                System.arraycopy(bytes, 0, merged, body.length, bytes.length);
+                body = merged;
+            }
+            exchange.getResponseHeaders().set("Content-Type", EmbeddingClient.BINARY_MEDIA_TYPE);
+        } else {
+            Object value = jsonField.equals("embedding") ? vectors.get(0) : vectors;
+            body = objectMapper.writeValueAsBytes(Map.of(jsonField, value));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
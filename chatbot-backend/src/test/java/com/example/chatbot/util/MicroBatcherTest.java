@@ -0,0 +1,88 @@
+package com.example.chatbot.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void submit_ShouldMergeRequestsWithinWindow() throws Exception {
+        MicroBatcher<String, String> batcher = batcher(10, 100, this::upperCase);
+
+        CompletableFuture<String> a = batcher.submit("a");
+        CompletableFuture<String> b = batcher.submit("b");
+
+        assertEquals("A", a.get(2, TimeUnit.SECONDS));
+        assertEquals("B", b.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("a", "b")), calls);
+        assertEquals(2.0, meterRegistry.get(MicroBatcher.FILL_METRIC).summary().max());
+    }
+
+    @Test
+    void submit_ShouldFlushImmediatelyWhenBatchIsFull() throws Exception {
+        // 窗口远大于测试超时，只有攒满才会发出
+        MicroBatcher<String, String> batcher = batcher(2, 60_000, this::upperCase);
+
+        CompletableFuture<String> a = batcher.submit("a");
+        CompletableFuture<String> b = batcher.submit("b");
+
+        assertEquals("A", a.get(2, TimeUnit.SECONDS));
+        assertEquals("B", b.get(2, TimeUnit.SECONDS));
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    void submit_ShouldFailEveryCallerWhenBatchCallFails() {
+        MicroBatcher<String, String> batcher = batcher(10, 20, items -> {
+            throw new IllegalStateException("backend down");
+        });
+
+        CompletableFuture<String> a = batcher.submit("a");
+        CompletableFuture<String> b = batcher.submit("b");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> a.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertThrows(ExecutionException.class, () -> b.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_ShouldFailEveryCallerWhenExecutorRejectsBatch() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 2, 60_000, this::upperCase,
+                Schedulers.parallel(), Schedulers.fromExecutor(task -> {
+                    throw new RejectedExecutionException("pool exhausted");
+                }), meterRegistry);
+
+        CompletableFuture<String> a = batcher.submit("a");
+        CompletableFuture<String> b = batcher.submit("b");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> a.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertThrows(ExecutionException.class, () -> b.get(2, TimeUnit.SECONDS));
+        assertTrue(calls.isEmpty());
+    }
+
+    private List<String> upperCase(List<String> items) {
+        calls.add(items);
+        return items.stream().map(String::toUpperCase).toList();
+    }
+
+    private MicroBatcher<String, String> batcher(int maxBatchSize, long windowMs, Function<List<String>, List<String>> call) {
+        return new MicroBatcher<>("test", maxBatchSize, windowMs, call,
+                Schedulers.parallel(), Schedulers.boundedElastic(), meterRegistry);
+    }
+}
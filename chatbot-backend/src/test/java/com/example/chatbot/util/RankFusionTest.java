@@ -0,0 +1,62 @@
+package com.example.chatbot.util;
+
+import com.example.chatbot.dto.ScoredDocument;
+import com.example.chatbot.entity.KnowledgeBase;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankFusionTest {
+
+    @Test
+    void fuse_ShouldPreferDocumentsFoundByMultipleTiers() {
+        List<ScoredDocument> keyword = List.of(scored(1L, 3), scored(2L, 2));
+        List<ScoredDocument> vector = List.of(scored(2L, 0.97), scored(3L, 0.95));
+
+        List<ScoredDocument> fused = RankFusion.fuse(List.of(
+                new RankFusion.Ranking(1.0, keyword),
+                new RankFusion.Ranking(1.0, vector)), 60, 10);
+
+        assertEquals(List.of(2L, 1L, 3L), ids(fused));
+        assertEquals(1.0 / 62 + 1.0 / 61, fused.get(0).score(), 1e-9);
+    }
+
+    @Test
+    void fuse_ShouldBreakTiesByTierOrderAndTruncate() {
+        List<ScoredDocument> redis = List.of(scored(1L, 1));
+        List<ScoredDocument> database = List.of(scored(3L, 1), scored(4L, 1));
+
+        List<ScoredDocument> fused = RankFusion.fuse(List.of(
+                new RankFusion.Ranking(1.0, redis),
+                new RankFusion.Ranking(1.0, database)), 60, 2);
+
+        assertEquals(List.of(1L, 3L), ids(fused));
+    }
+
+    @Test
+    void fuse_ShouldApplyWeightsAndIgnoreDuplicatesWithinTier() {
+        List<ScoredDocument> redis = List.of(scored(1L, 1), scored(1L, 1), scored(2L, 1));
+        List<ScoredDocument> vector = List.of(scored(3L, 0.99));
+
+        List<ScoredDocument> fused = RankFusion.fuse(List.of(
+                new RankFusion.Ranking(0.5, redis),
+                new RankFusion.Ranking(1.0, vector)), 60, 10);
+
+        assertEquals(List.of(3L, 1L, 2L), ids(fused));
+        assertEquals(0.5 / 62, fused.get(2).score(), 1e-9);
+    }
+
+    private List<Long> ids(List<ScoredDocument> documents) {
+        return documents.stream().map(scored -> scored.document().getId()).toList();
+    }
+
+    private ScoredDocument scored(Long id, double score) {
+        KnowledgeBase kb = new KnowledgeBase();
+        kb.setId(id);
+        kb.setTitle("标题" + id);
+        kb.setContent("内容" + id);
+        return new ScoredDocument(kb, score);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void join_ShouldShareUpstreamBetweenConcurrentCallers() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger subscriptions = new AtomicInteger();
+        Flux<String> upstream = Flux.just("a", "b", "c")
+                .delayElements(Duration.ofMillis(50))
+                .doOnSubscribe(s -> subscriptions.incrementAndGet());
+
+        Flux<String> first = singleFlight.join("key", () -> upstream);
+        Flux<String> second = singleFlight.join("key", () -> upstream);
+
+        List<List<String>> results = Flux.merge(first.collectList(), second.collectList())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("a", "b", "c")), results);
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    void join_ShouldReplayEarlierElementsToLateJoiner() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger subscriptions = new AtomicInteger();
+        Flux<String> upstream = Flux.just("a", "b", "c")
+                .delayElements(Duration.ofMillis(100))
+                .doOnSubscribe(s -> subscriptions.incrementAndGet());
+
+        Flux<String> first = singleFlight.join("key", () -> upstream);
+        Flux<String> late = Flux.defer(() -> singleFlight.join("key", () -> upstream))
+                .delaySubscription(Duration.ofMillis(150));
+
+        List<List<String>> results = Flux.merge(first.collectList(), late.collectList())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(List.of("a", "b", "c"), results.get(1));
+    }
+
+    @Test
+    void join_ShouldStartNewUpstreamAfterCompletion() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger subscriptions = new AtomicInteger();
+        Flux<String> upstream = Flux.just("a").doOnSubscribe(s -> subscriptions.incrementAndGet());
+
+        singleFlight.join("key", () -> upstream).blockLast();
+        singleFlight.join("key", () -> upstream).blockLast();
+
+        assertEquals(2, subscriptions.get());
+    }
+}
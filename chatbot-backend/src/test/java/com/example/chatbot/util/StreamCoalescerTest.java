@@ -0,0 +1,96 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamCoalescerTest {
+
+    @Test
+    void coalesce_ShouldSendFirstChunkAndMergeRestWithinWindow() {
+        Flux<String> chunks = Flux.just("你", "好", "，", "世", "界");
+
+        List<String> frames = StreamCoalescer.coalesce(chunks, 1024, 1000, Schedulers.parallel())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("你", "好，世界"), frames);
+    }
+
+    @Test
+    void coalesce_ShouldFlushWhenMaxBytesReached() {
+        Flux<String> chunks = Flux.just("a", "bb", "cc", "dd", "e");
+
+        List<String> frames = StreamCoalescer.coalesce(chunks, 4, 1000, Schedulers.parallel())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("a", "bbcc", "dde"), frames);
+    }
+
+    @Test
+    void coalesce_ShouldFlushWhenWindowExpires() {
+        Flux<String> chunks = Flux.concat(
+                Flux.just("a", "b"),
+                Flux.just("c").delaySubscription(Duration.ofMillis(300)));
+
+        List<String> frames = StreamCoalescer.coalesce(chunks, 1024, 50, Schedulers.parallel())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("a", "b", "c"), frames);
+    }
+
+    @Test
+    void coalesce_ShouldFlushAsSoonAsMaxBytesReachedWithoutWaitingForWindow() {
+        Flux<String> chunks = Flux.concat(Flux.just("a", "bb", "cc"), Flux.never());
+
+        List<String> frames = StreamCoalescer.coalesce(chunks, 4, 60_000, Schedulers.parallel())
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("a", "bbcc"), frames);
+    }
+
+    @Test
+    void coalesce_ShouldAccumulateInsteadOfFailingWhenSubscriberIsSlow() {
+        Flux<String> chunks = Flux.interval(Duration.ofMillis(1)).take(1000).map(i -> "x");
+
+        // 每次只请求一个帧，处理完才请求下一个
+        List<String> frames = StreamCoalescer.coalesce(chunks, 1024, 1, Schedulers.parallel())
+                .publishOn(Schedulers.boundedElastic(), 1)
+                .doOnNext(frame -> LockSupport.parkNanos(Duration.ofMillis(5).toNanos()))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertEquals("x".repeat(1000), String.join("", frames));
+        assertTrue(frames.size() < 1000, "slow subscriber should receive merged frames");
+    }
+
+    @Test
+    void coalesce_ShouldPropagateSubscriberContextToUpstream() {
+        Flux<String> chunks = Flux.deferContextual(context -> Flux.just("a", context.get("trace"), "c"));
+
+        List<String> frames = StreamCoalescer.coalesce(chunks, 1024, 1000, Schedulers.parallel())
+                .contextWrite(Context.of("trace", "b"))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("a", "bc"), frames);
+    }
+
+    @Test
+    void utf8Length_ShouldMatchEncodedLength() {
+        String text = "aé中😀";
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, StreamCoalescer.utf8Length(text));
+    }
+}
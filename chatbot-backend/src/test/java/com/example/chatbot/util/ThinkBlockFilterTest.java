@@ -0,0 +1,86 @@
+package com.example.chatbot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThinkBlockFilterTest {
+
+    @Test
+    void accept_ShouldStripThinkBlockAndLeadingWhitespace() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        String visible = filter.accept("<think>\n推理过程\n</think>\n\n最终回答");
+
+        assertEquals("最终回答", visible);
+        assertEquals("", filter.finish());
+        assertEquals("最终回答", filter.result());
+    }
+
+    @Test
+    void accept_ShouldHandleTagsSplitAcrossChunks() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+        StringBuilder streamed = new StringBuilder();
+
+        for (String chunk : List.of("<th", "ink>让我想想", "...</thi", "nk>", "\n", "答案", "是42")) {
+            streamed.append(filter.accept(chunk));
+        }
+        streamed.append(filter.finish());
+
+        assertEquals("答案是42", streamed.toString());
+        assertEquals("答案是42", filter.result());
+    }
+
+    @Test
+    void accept_ShouldKeepNonThinkAngleBrackets() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        String visible = filter.accept("使用List<String>保存，a <b 和 <<think>忽略</think>结束");
+
+        assertEquals("使用List<String>保存，a <b 和 <结束", visible);
+    }
+
+    @Test
+    void accept_ShouldDropReasoningBeforeBareCloseTag() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+        StringBuilder streamed = new StringBuilder();
+
+        // 开头的<think>被省略，只有推理内容和</think>
+        for (String chunk : List.of("嗯，用户问的是", "42的含义。</th", "ink>\n\n", "答案", "是42")) {
+            streamed.append(filter.accept(chunk));
+        }
+        streamed.append(filter.finish());
+
+        assertEquals("答案是42", streamed.toString());
+        assertEquals("答案是42", filter.result());
+    }
+
+    @Test
+    void accept_ShouldHoldOutputWithoutThinkBlockUntilFinish() {
+        ThinkBlockFilter filter = new ThinkBlockFilter();
+
+        assertEquals("", filter.accept("\n直接回答\n第二行"));
+        assertEquals("直接回答\n第二行", filter.finish());
+        assertEquals("直接回答\n第二行", filter.result());
+    }
+
+    @Test
+    void accept_ShouldReleaseHeldOutputOnceLimitIsExceeded() {
+        ThinkBlockFilter filter = new ThinkBlockFilter(4);
+
+        assertEquals("直接回答。", filter.accept("直接回答。"));
+        assertEquals("第二句", filter.accept("第二句"));
+        assertEquals("直接回答。第二句", filter.result());
+    }
+
+    @Test
+    void finish_ShouldFlushUnfinishedTagPrefix() {
+        ThinkBlockFilter filter = new ThinkBlockFilter(0);
+
+        assertEquals("比较a", filter.accept("比较a</th"));
+        assertEquals("</th", filter.finish());
+        assertEquals("比较a</th", filter.result());
+    }
+}
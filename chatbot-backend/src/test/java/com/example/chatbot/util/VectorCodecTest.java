@@ -0,0 +1,86 @@
+package com.example.chatbot.util;
+
+import com.example.milvus.FloatArrayList;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VectorCodecTest {
+
+    private static final int DIM = 1024;
+
+    @Test
+    void fromBytes_ShouldRoundTripLittleEndianFloats() {
+        float[] vector = {1.5f, -0.25f, Float.MIN_VALUE, 3e8f};
+
+        byte[] bytes = VectorCodec.toBytes(vector);
+
+        assertEquals(16, bytes.length);
+        // 1.5f = 0x3FC00000，小端序低字节在前
+        assertEquals((byte) 0xC0, bytes[2]);
+        assertEquals((byte) 0x3F, bytes[3]);
+        assertArrayEquals(vector, VectorCodec.fromBytes(bytes));
+    }
+
+    /**
+     * 对比一次查询向量从响应体到Milvus参数的内存分配：
+     * 原实现解析JSON得到Map -> List<Double> -> List<Float>，现在直接把float32字节解码为float[]并以视图交给SDK
+     */
+    @Test
+    void binaryPath_ShouldAllocateFarLessPerQueryThanBoxedJsonPath() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) Math.sin(i) * 0.05f;
+        }
+        byte[] json = objectMapper.writeValueAsBytes(Map.of("embedding", vector));
+        byte[] binary = VectorCodec.toBytes(vector);
+
+        Supplier<Object> boxedPath = () -> {
+            try {
+                Map<?, ?> result = objectMapper.readValue(json, Map.class);
+                List<?> embeddingDouble = (List<?>) result.get("embedding");
+                List<Float> embedding = new ArrayList<>();
+                for (Object d : embeddingDouble) {
+                    embedding.add(((Number) d).floatValue());
+                }
+                return List.of(embedding);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        Supplier<Object> primitivePath = () -> List.of(FloatArrayList.of(EmbeddingClient.decodeBinary(binary, 1).get(0)));
+
+        long boxed = allocatedPerCall(threads, boxedPath);
+        long primitive = allocatedPerCall(threads, primitivePath);
+
+        // float[]本身约4KB；装箱路径每个分量至少一个Double和一个Float对象
+        assertTrue(primitive < boxed / 4, "primitive path allocated " + primitive + " bytes per query, boxed path " + boxed);
+    }
+
+    private static long allocatedPerCall(com.sun.management.ThreadMXBean threads, Supplier<Object> action) {
+        Object sink = null;
+        for (int i = 0; i < 2_000; i++) {
+            sink = action.get();
+        }
+        int iterations = 2_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            sink = action.get();
+        }
+        long after = threads.getCurrentThreadAllocatedBytes();
+        assertNotNull(sink);
+        return (after - before) / iterations;
+    }
+}
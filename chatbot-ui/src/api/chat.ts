@@ -17,6 +17,7 @@ export interface ChatHistoryItem {
   role: string
   message: string
   modelId?: string
+  truncated?: boolean // 客户端中途断开，回答未生成完整
 }
 
 export const chatApi = {
@@ -64,7 +65,13 @@ export const chatApi = {
               
               if (message.startsWith('data:')) {
                 try {
-                  const jsonStr = message.slice(5).trim() // 跳过 'data:' 并去除空白字符
+                  // 去掉服务端的心跳注释行（以 ':' 开头），再跳过 'data:' 并去除空白字符
+                  const jsonStr = message
+                    .split('\n')
+                    .filter(line => !line.startsWith(':'))
+                    .join('\n')
+                    .slice(5)
+                    .trim()
                   if (jsonStr && jsonStr !== 'data:') { // 确保不是空字符串或单独的 data:
                     const response = JSON.parse(jsonStr)
                     // 使用消息内容、会话ID和序列号组合作为唯一标识
@@ -36,6 +36,10 @@ export const knowledgeApi = {
         return request.post('/ai/knowledge/batch-import', knowledgeList)
     },
 
+    batchDeleteKnowledge: (ids: number[]) => {
+        return request.post<number>('/ai/knowledge/batch-delete', ids)
+    },
+
     /**
      * 下载Excel文件（BIO方式）
      */
@@ -0,0 +1,31 @@
+package com.example.milvus;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * float[]的只读List视图，不复制数组，元素在读取时才装箱
+ * Milvus SDK要求向量为{@code List<Float>}，应用内部统一使用float[]，只在这个边界上包装一层
+ */
+public final class FloatArrayList extends AbstractList<Float> implements RandomAccess {
+    private final float[] values;
+
+    private FloatArrayList(float[] values) {
+        this.values = values;
+    }
+
+    public static List<Float> of(float[] values) {
+        return new FloatArrayList(values);
+    }
+
+    @Override
+    public Float get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.milvus;
 
+import com.example.milvus.embedded.EmbeddedVectorStore;
 import io.milvus.client.MilvusServiceClient;
 import io.milvus.param.ConnectParam;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -12,15 +13,43 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @EnableConfigurationProperties(MilvusProperties.class)
 @ConditionalOnClass(MilvusServiceClient.class)
-@ConditionalOnProperty(prefix = "milvus", name = {"host", "port"})
 public class MilvusAutoConfiguration {
-    @Bean
-    @ConditionalOnMissingBean
-    public MilvusServiceClient milvusClient(MilvusProperties properties) {
-        ConnectParam connectParam = ConnectParam.newBuilder()
-                .withHost(properties.getHost())
-                .withPort(properties.getPort())
-                .build();
-        return new MilvusServiceClient(connectParam);
+
+    /**
+     * 默认模式：连接milvus.host/port指定的Milvus服务
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "milvus", name = "mode", havingValue = "remote", matchIfMissing = true)
+    static class RemoteConfiguration {
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(prefix = "milvus", name = {"host", "port"})
+        public MilvusServiceClient milvusClient(MilvusProperties properties) {
+            ConnectParam connectParam = ConnectParam.newBuilder()
+                    .withHost(properties.getHost())
+                    .withPort(properties.getPort())
+                    .build();
+            return new MilvusServiceClient(connectParam);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(prefix = "milvus", name = {"host", "port"})
+        public VectorStore vectorStore(MilvusServiceClient milvusClient, MilvusProperties properties) {
+            return new MilvusVectorStore(milvusClient, properties);
+        }
+    }
+
+    /**
+     * milvus.mode=embedded：进程内HNSW索引，数据保存在milvus.embedded.data-dir
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "milvus", name = "mode", havingValue = "embedded")
+    static class EmbeddedConfiguration {
+        @Bean(destroyMethod = "close")
+        @ConditionalOnMissingBean(VectorStore.class)
+        public EmbeddedVectorStore vectorStore(MilvusProperties properties) {
+            return new EmbeddedVectorStore(properties);
+        }
     }
-} 
\ No newline at end of file
+}
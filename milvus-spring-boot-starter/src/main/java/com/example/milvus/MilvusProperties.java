@@ -4,11 +4,57 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "milvus")
 public class MilvusProperties {
+    private Mode mode = Mode.REMOTE;
     private String host;
     private int port;
+    private final Search search = new Search();
+    private final Index index = new Index();
+    private final Embedded embedded = new Embedded();
 
+    public Mode getMode() { return mode; }
+    public void setMode(Mode mode) { this.mode = mode; }
     public String getHost() { return host; }
     public void setHost(String host) { this.host = host; }
     public int getPort() { return port; }
     public void setPort(int port) { this.port = port; }
-}
\ No newline at end of file
+    public Search getSearch() { return search; }
+    public Index getIndex() { return index; }
+    public Embedded getEmbedded() { return embedded; }
+
+    public enum Mode {
+        /** 连接远程Milvus服务 */
+        REMOTE,
+        /** 进程内HNSW索引，不依赖Milvus服务 */
+        EMBEDDED
+    }
+
+    public static class Search {
+        private int nprobe = 50;
+        private int ef = 64;
+
+        public int getNprobe() { return nprobe; }
+        public void setNprobe(int nprobe) { this.nprobe = nprobe; }
+        public int getEf() { return ef; }
+        public void setEf(int ef) { this.ef = ef; }
+    }
+
+    public static class Index {
+        private int m = 8;
+        private int efConstruction = 64;
+
+        public int getM() { return m; }
+        public void setM(int m) { this.m = m; }
+        public int getEfConstruction() { return efConstruction; }
+        public void setEfConstruction(int efConstruction) { this.efConstruction = efConstruction; }
+    }
+
+    public static class Embedded {
+        private String dataDir = "data/vector-store";
+        private long flushIntervalSeconds = 30;
+
+        public String getDataDir() { return dataDir; }
+        public void setDataDir(String dataDir) { this.dataDir = dataDir; }
+        public long getFlushIntervalSeconds() { return flushIntervalSeconds; }
+        public void setFlushIntervalSeconds(long flushIntervalSeconds) { this.flushIntervalSeconds = flushIntervalSeconds; }
+    }
+}
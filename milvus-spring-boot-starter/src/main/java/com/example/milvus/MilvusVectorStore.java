@@ -0,0 +1,176 @@
+package com.example.milvus;
+
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.grpc.DataType;
+import io.milvus.grpc.ManualCompactionResponse;
+import io.milvus.grpc.SearchResults;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.milvus.param.R;
+import io.milvus.param.collection.CreateCollectionParam;
+import io.milvus.param.control.ManualCompactParam;
+import io.milvus.param.collection.FieldType;
+import io.milvus.param.collection.HasCollectionParam;
+import io.milvus.param.dml.DeleteParam;
+import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.SearchParam;
+import io.milvus.param.dml.UpsertParam;
+import io.milvus.param.index.CreateIndexParam;
+import io.milvus.response.SearchResultsWrapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于远程Milvus服务的向量存储，集合使用HNSW索引和COSINE度量
+ */
+public class MilvusVectorStore implements VectorStore {
+    private static final Log log = LogFactory.getLog(MilvusVectorStore.class);
+
+    static final String ID_FIELD = "id";
+    static final String VECTOR_FIELD = "vector";
+    static final int MAX_IDS_PER_DELETE = 1000;
+
+    private final MilvusServiceClient milvusClient;
+    private final MilvusProperties properties;
+
+    public MilvusVectorStore(MilvusServiceClient milvusClient, MilvusProperties properties) {
+        this.milvusClient = milvusClient;
+        this.properties = properties;
+    }
+
+    @Override
+    public void createCollectionIfAbsent(String collection, int dimension) {
+        R<Boolean> hasCollectionResp = milvusClient.hasCollection(HasCollectionParam.newBuilder()
+                .withCollectionName(collection)
+                .build());
+        if (Boolean.TRUE.equals(hasCollectionResp.getData())) {
+            return;
+        }
+
+        List<FieldType> fieldTypes = List.of(
+                FieldType.newBuilder()
+                        .withName(ID_FIELD)
+                        .withDataType(DataType.Int64)
+                        .withPrimaryKey(true)
+                        .withAutoID(false)
+                        .build(),
+                FieldType.newBuilder()
+                        .withName(VECTOR_FIELD)
+                        .withDataType(DataType.FloatVector)
+                        .withDimension(dimension)
+                        .build()
+        );
+        check(milvusClient.createCollection(CreateCollectionParam.newBuilder()
+                .withCollectionName(collection)
+                .withFieldTypes(fieldTypes)
+                .build()), "create collection " + collection);
+
+        MilvusProperties.Index index = properties.getIndex();
+        check(milvusClient.createIndex(CreateIndexParam.newBuilder()
+                .withCollectionName(collection)
+                .withFieldName(VECTOR_FIELD)
+                .withIndexType(IndexType.HNSW)
+                .withMetricType(MetricType.COSINE)
+                .withExtraParam(String.format("{\"M\": %d, \"efConstruction\": %d}", index.getM(), index.getEfConstruction()))
+                .build()), "create index on " + collection);
+        log.info("Created Milvus collection: " + collection);
+    }
+
+    /**
+     * 所有查询向量放进同一个SearchParam，结果按下标从SearchResultsWrapper.getIDScore(i)取回
+     */
+    @Override
+    public List<List<VectorHit>> searchBatch(String collection, List<float[]> vectors, int topK) {
+        List<List<Float>> vectorValues = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            vectorValues.add(FloatArrayList.of(vector));
+        }
+        SearchParam searchParam = SearchParam.newBuilder()
+                .withCollectionName(collection)
+                .withVectorFieldName(VECTOR_FIELD)
+                .withVectors(vectorValues)
+                .withTopK(topK)
+                .withMetricType(MetricType.COSINE)
+                .withOutFields(List.of(ID_FIELD))
+                .withParams(Map.of("nprobe", String.valueOf(properties.getSearch().getNprobe())).toString())
+                .build();
+
+        R<SearchResults> resp = milvusClient.search(searchParam);
+        if (resp.getStatus() != R.Status.Success.getCode()) {
+            log.error("Milvus search failed: " + resp.getMessage());
+            return Collections.nCopies(vectors.size(), List.of());
+        }
+
+        SearchResultsWrapper wrapper = new SearchResultsWrapper(resp.getData().getResults());
+        List<List<VectorHit>> results = new ArrayList<>(vectors.size());
+        for (int i = 0; i < vectors.size(); i++) {
+            List<SearchResultsWrapper.IDScore> idScores = wrapper.getIDScore(i);
+            List<VectorHit> hits = new ArrayList<>(idScores.size());
+            for (SearchResultsWrapper.IDScore idScore : idScores) {
+                hits.add(new VectorHit(idScore.getLongID(), idScore.getScore()));
+            }
+            results.add(hits);
+        }
+        return results;
+    }
+
+    @Override
+    public void insert(String collection, List<Long> ids, List<float[]> vectors) {
+        check(milvusClient.insert(InsertParam.newBuilder()
+                .withCollectionName(collection)
+                .withFields(fields(ids, vectors))
+                .build()), "insert into " + collection);
+    }
+
+    @Override
+    public void upsert(String collection, List<Long> ids, List<float[]> vectors) {
+        check(milvusClient.upsert(UpsertParam.newBuilder()
+                .withCollectionName(collection)
+                .withFields(fields(ids, vectors))
+                .build()), "upsert into " + collection);
+    }
+
+    /**
+     * 主键按MAX_IDS_PER_DELETE分组，每组一个id in [...]表达式
+     */
+    @Override
+    public void delete(String collection, List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_DELETE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_DELETE, ids.size()));
+            check(milvusClient.delete(DeleteParam.newBuilder()
+                    .withCollectionName(collection)
+                    .withExpr(ID_FIELD + " in " + chunk)
+                    .build()), "delete from " + collection);
+        }
+    }
+
+    @Override
+    public void compact(String collection) {
+        R<ManualCompactionResponse> resp = milvusClient.manualCompact(ManualCompactParam.newBuilder()
+                .withCollectionName(collection)
+                .build());
+        check(resp, "compact " + collection);
+        log.info("Triggered Milvus compaction " + resp.getData().getCompactionID() + " on " + collection);
+    }
+
+    private static List<InsertParam.Field> fields(List<Long> ids, List<float[]> vectors) {
+        List<List<Float>> vectorValues = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            vectorValues.add(FloatArrayList.of(vector));
+        }
+        return List.of(
+                new InsertParam.Field(ID_FIELD, ids),
+                new InsertParam.Field(VECTOR_FIELD, vectorValues));
+    }
+
+    private static void check(R<?> resp, String action) {
+        if (resp.getStatus() != R.Status.Success.getCode()) {
+            throw new IllegalStateException("Milvus failed to " + action + ": " + resp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.milvus;
+
+/**
+ * 一条检索结果：主键和余弦相似度
+ */
+public record VectorHit(long id, float score) {
+}
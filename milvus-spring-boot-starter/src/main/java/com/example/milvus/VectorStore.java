@@ -0,0 +1,65 @@
+package com.example.milvus;
+
+import java.util.List;
+
+/**
+ * 向量存储，集合只有Int64主键和一个浮点向量字段，度量方式固定为余弦相似度
+ * milvus.mode=remote时由Milvus服务实现，milvus.mode=embedded时由进程内的HNSW索引实现
+ */
+public interface VectorStore {
+    /**
+     * 集合不存在时创建集合和索引
+     * @param collection 集合名称
+     * @param dimension 向量维度
+     */
+    void createCollectionIfAbsent(String collection, int dimension);
+
+    /**
+     * 检索与查询向量最相似的向量
+     * @param collection 集合名称
+     * @param vector 查询向量
+     * @param topK 返回结果数量
+     * @return 按相似度从高到低排列的结果
+     */
+    default List<VectorHit> search(String collection, float[] vector, int topK) {
+        return searchBatch(collection, List.of(vector), topK).get(0);
+    }
+
+    /**
+     * 一次请求检索多个查询向量，分摊每次请求的固定开销
+     * @param collection 集合名称
+     * @param vectors 查询向量
+     * @param topK 每个查询向量返回的结果数量
+     * @return 与vectors一一对应的结果，每组按相似度从高到低排列
+     */
+    List<List<VectorHit>> searchBatch(String collection, List<float[]> vectors, int topK);
+
+    /**
+     * 批量写入向量
+     * @param collection 集合名称
+     * @param ids 主键，与vectors一一对应
+     * @param vectors 向量
+     */
+    void insert(String collection, List<Long> ids, List<float[]> vectors);
+
+    /**
+     * 批量写入或替换向量，主键已存在时旧向量被原子替换，检索不会出现文档缺失的窗口
+     * @param collection 集合名称
+     * @param ids 主键，与vectors一一对应
+     * @param vectors 向量
+     */
+    void upsert(String collection, List<Long> ids, List<float[]> vectors);
+
+    /**
+     * 按主键批量删除向量
+     * @param collection 集合名称
+     * @param ids 主键
+     */
+    void delete(String collection, List<Long> ids);
+
+    /**
+     * 回收删除和替换留下的墓碑，远程模式下只提交压缩任务，不等待完成
+     * @param collection 集合名称
+     */
+    void compact(String collection);
+}
@@ -0,0 +1,196 @@
+package com.example.milvus.embedded;
+
+import com.example.milvus.MilvusProperties;
+import com.example.milvus.VectorHit;
+import com.example.milvus.VectorStore;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内向量存储，每个集合对应一个HnswIndex，不需要部署Milvus
+ * 索引保存在milvus.embedded.data-dir下的{集合名}.hnsw文件中，启动时加载，
+ * 之后按flush-interval-seconds定期把有变化的集合写回磁盘，关闭时再写一次。
+ * 写回前如果墓碑数量超过存活向量数，先重建索引回收空间。
+ * 进程崩溃时最后一次写回之后的变更会丢失，启动后由调用方根据ids和flushedAt与数据源对齐。
+ */
+public class EmbeddedVectorStore implements VectorStore, AutoCloseable {
+    private static final Log log = LogFactory.getLog(EmbeddedVectorStore.class);
+    private static final String FILE_SUFFIX = ".hnsw";
+
+    private final Path dataDir;
+    private final MilvusProperties properties;
+    private final Map<String, HnswIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Long> flushedVersions = new ConcurrentHashMap<>();
+    private final Map<String, Instant> flushedTimes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public EmbeddedVectorStore(MilvusProperties properties) {
+        this.properties = properties;
+        this.dataDir = Paths.get(properties.getEmbedded().getDataDir());
+        long interval = properties.getEmbedded().getFlushIntervalSeconds();
+        if (interval > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hnsw-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public void createCollectionIfAbsent(String collection, int dimension) {
+        indexes.computeIfAbsent(collection, name -> open(name, dimension));
+    }
+
+    @Override
+    public List<VectorHit> search(String collection, float[] vector, int topK) {
+        return index(collection).search(vector, topK, properties.getSearch().getEf());
+    }
+
+    /**
+     * 进程内没有请求开销可以分摊，逐个检索
+     */
+    @Override
+    public List<List<VectorHit>> searchBatch(String collection, List<float[]> vectors, int topK) {
+        HnswIndex index = index(collection);
+        List<List<VectorHit>> results = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            results.add(index.search(vector, topK, properties.getSearch().getEf()));
+        }
+        return results;
+    }
+
+    @Override
+    public void insert(String collection, List<Long> ids, List<float[]> vectors) {
+        if (ids.size() != vectors.size()) {
+            throw new IllegalArgumentException("Got " + ids.size() + " ids for " + vectors.size() + " vectors");
+        }
+        HnswIndex index = index(collection);
+        for (int i = 0; i < ids.size(); i++) {
+            index.add(ids.get(i), vectors.get(i));
+        }
+    }
+
+    /**
+     * HnswIndex写入已存在的主键时会替换旧向量，与insert相同
+     */
+    @Override
+    public void upsert(String collection, List<Long> ids, List<float[]> vectors) {
+        insert(collection, ids, vectors);
+    }
+
+    @Override
+    public void delete(String collection, List<Long> ids) {
+        HnswIndex index = index(collection);
+        for (Long id : ids) {
+            index.remove(id);
+        }
+    }
+
+    @Override
+    public void compact(String collection) {
+        index(collection).compact();
+    }
+
+    /**
+     * @return 集合中所有未删除向量的主键
+     */
+    public Set<Long> ids(String collection) {
+        return index(collection).ids();
+    }
+
+    /**
+     * @return 集合最近一次写回磁盘的时间，此前的变更都已包含在索引文件中；从未写回时返回null
+     */
+    public Instant flushedAt(String collection) {
+        index(collection);
+        return flushedTimes.get(collection);
+    }
+
+    /**
+     * 把有变化的集合写回磁盘，单个集合失败不影响其他集合
+     */
+    public synchronized void flush() {
+        for (Map.Entry<String, HnswIndex> entry : indexes.entrySet()) {
+            String collection = entry.getKey();
+            HnswIndex index = entry.getValue();
+            try {
+                if (index.deletedCount() > index.size()) {
+                    log.info("Compacting embedded collection " + collection + ": "
+                            + index.deletedCount() + " deleted, " + index.size() + " live");
+                    index.compact();
+                }
+                long version = index.version();
+                if (flushedVersions.getOrDefault(collection, -1L) != version) {
+                    Instant startedAt = Instant.now();
+                    index.save(file(collection));
+                    flushedVersions.put(collection, version);
+                    flushedTimes.put(collection, startedAt);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to flush embedded collection " + collection, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush();
+    }
+
+    private HnswIndex open(String collection, int dimension) {
+        Path file = file(collection);
+        try {
+            if (Files.exists(file)) {
+                HnswIndex index = HnswIndex.load(file);
+                if (index.dimension() != dimension) {
+                    throw new IllegalStateException("Embedded collection " + collection + " has dimension "
+                            + index.dimension() + " but " + dimension + " was requested, remove " + file + " to rebuild");
+                }
+                flushedVersions.put(collection, index.version());
+                flushedTimes.put(collection, Files.getLastModifiedTime(file).toInstant());
+                log.info("Loaded embedded collection " + collection + " with " + index.size() + " vectors from " + file);
+                return index;
+            }
+            Files.createDirectories(dataDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open embedded collection " + collection, e);
+        }
+        MilvusProperties.Index config = properties.getIndex();
+        log.info("Created embedded collection " + collection + " in " + dataDir);
+        return new HnswIndex(dimension, config.getM(), config.getEfConstruction());
+    }
+
+    private HnswIndex index(String collection) {
+        HnswIndex index = indexes.get(collection);
+        if (index == null) {
+            throw new IllegalStateException("Embedded collection does not exist: " + collection);
+        }
+        return index;
+    }
+
+    private Path file(String collection) {
+        return dataDir.resolve(collection + FILE_SUFFIX);
+    }
+}
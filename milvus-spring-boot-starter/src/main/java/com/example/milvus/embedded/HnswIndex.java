@@ -0,0 +1,510 @@
+package com.example.milvus.embedded;
+
+import com.example.milvus.VectorHit;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内HNSW图索引（Malkov & Yashunin），度量方式为余弦相似度
+ * 向量写入时归一化，按节点顺序连续存放在一个float[]中，相似度即点积，检索过程中没有装箱对象。
+ * 每个节点第0层最多2M个邻居，其余层最多M个，邻居按启发式规则挑选以保留不同方向的连接。
+ * 删除只打墓碑标记：节点仍参与图遍历，但不会出现在结果中，墓碑过多时由compact重建。
+ * 检索持读锁可并发执行，写入、删除和重建持写锁。
+ * 文件只在save和load时通过内存映射读写，运行期间整个索引常驻堆内存，堆大小需要按向量数×维度×4字节预留。
+ */
+public class HnswIndex {
+    private static final int MAGIC = 0x484E5357;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int[] NO_LINKS = new int[0];
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> Float.compare(b.similarity, a.similarity);
+    private static final Comparator<Candidate> WORST_FIRST = BEST_FIRST.reversed();
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> nodes = new HashMap<>();
+
+    private float[] vectors;
+    private long[] ids;
+    private int[][][] links;
+    private int count;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private long version;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        if (dimension <= 0 || m < 2 || efConstruction <= 0) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimension=" + dimension
+                    + ", M=" + m + ", efConstruction=" + efConstruction);
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.ids = new long[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 写入向量，主键已存在时替换旧向量
+     */
+    public void add(long id, float[] vector) {
+        checkDimension(vector);
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            insert(id, normalized, 0);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return 主键存在并被删除时返回true
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodes.remove(id);
+            if (node == null) {
+                return false;
+            }
+            deleted.set(node);
+            version++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param ef 检索时的候选集大小，小于topK时按topK处理
+     * @return 按相似度从高到低排列的结果
+     */
+    public List<VectorHit> search(float[] query, int topK, int ef) {
+        checkDimension(query);
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || topK <= 0) {
+                return List.of();
+            }
+            Candidate entry = greedySearch(normalized, 0, maxLevel, 0);
+            List<Candidate> found = searchLayer(normalized, 0, List.of(entry), Math.max(ef, topK), 0, true);
+            List<VectorHit> hits = new ArrayList<>(Math.min(topK, found.size()));
+            for (int i = 0; i < found.size() && i < topK; i++) {
+                Candidate candidate = found.get(i);
+                hits.add(new VectorHit(ids[candidate.node], candidate.similarity));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 所有未删除向量的主键
+     */
+    public Set<Long> ids() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(nodes.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 每次写入或删除加一，用于判断索引是否需要落盘
+     */
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 丢弃墓碑节点，用存活的向量重建整张图
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            HnswIndex rebuilt = new HnswIndex(dimension, m, efConstruction);
+            rebuilt.ensureCapacity(nodes.size());
+            for (int node = 0; node < count; node++) {
+                if (!deleted.get(node)) {
+                    rebuilt.insert(ids[node], vectors, node * dimension);
+                }
+            }
+            vectors = rebuilt.vectors;
+            ids = rebuilt.ids;
+            links = rebuilt.links;
+            count = rebuilt.count;
+            entryPoint = rebuilt.entryPoint;
+            maxLevel = rebuilt.maxLevel;
+            deleted.clear();
+            nodes.clear();
+            nodes.putAll(rebuilt.nodes);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 通过内存映射把索引写入临时文件，刷盘后原子替换目标文件
+     * 单个映射区域不能超过2GB，适用于中小规模的知识库
+     */
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            long size = HEADER_BYTES;
+            for (int node = 0; node < count; node++) {
+                size += Long.BYTES + 1 + Integer.BYTES + (long) dimension * Float.BYTES;
+                for (int[] neighbors : links[node]) {
+                    size += Integer.BYTES + (long) neighbors.length * Integer.BYTES;
+                }
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("HNSW index of " + size + " bytes exceeds the 2GB mapped file limit");
+            }
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+                        .putInt(dimension).putInt(m).putInt(efConstruction)
+                        .putInt(count).putInt(entryPoint).putInt(maxLevel);
+                for (int node = 0; node < count; node++) {
+                    buffer.putLong(ids[node]);
+                    buffer.put((byte) (deleted.get(node) ? 1 : 0));
+                    buffer.putInt(links[node].length - 1);
+                    buffer.asFloatBuffer().put(vectors, node * dimension, dimension);
+                    buffer.position(buffer.position() + dimension * Float.BYTES);
+                    for (int[] neighbors : links[node]) {
+                        buffer.putInt(neighbors.length);
+                        buffer.asIntBuffer().put(neighbors);
+                        buffer.position(buffer.position() + neighbors.length * Integer.BYTES);
+                    }
+                }
+                buffer.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 通过内存映射读取save写出的索引文件
+     * 向量和邻接表全部复制到堆上的数组中，返回后映射区域即可释放，检索不再访问文件；
+     * 图遍历是随机访问，直接在映射区域上检索会在缺页时退化为磁盘随机读
+     */
+    public static HnswIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an HNSW index file: " + file);
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported HNSW index format " + formatVersion + ": " + file);
+            }
+            HnswIndex index = new HnswIndex(buffer.getInt(), buffer.getInt(), buffer.getInt());
+            int count = buffer.getInt();
+            int entryPoint = buffer.getInt();
+            int maxLevel = buffer.getInt();
+            int dimension = index.dimension;
+
+            index.ensureCapacity(count);
+            for (int node = 0; node < count; node++) {
+                long id = buffer.getLong();
+                boolean tombstone = buffer.get() != 0;
+                int level = buffer.getInt();
+                buffer.asFloatBuffer().get(index.vectors, node * dimension, dimension);
+                buffer.position(buffer.position() + dimension * Float.BYTES);
+                int[][] nodeLinks = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    nodeLinks[l] = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(nodeLinks[l]);
+                    buffer.position(buffer.position() + nodeLinks[l].length * Integer.BYTES);
+                }
+                index.ids[node] = id;
+                index.links[node] = nodeLinks;
+                if (tombstone) {
+                    index.deleted.set(node);
+                } else {
+                    index.nodes.put(id, node);
+                }
+            }
+            index.count = count;
+            index.entryPoint = entryPoint;
+            index.maxLevel = maxLevel;
+            return index;
+        }
+    }
+
+    /**
+     * 写入已归一化的向量，调用方持有写锁
+     */
+    private void insert(long id, float[] source, int offset) {
+        Integer previous = nodes.remove(id);
+        if (previous != null) {
+            deleted.set(previous);
+        }
+        ensureCapacity(count + 1);
+        int node = count++;
+        System.arraycopy(source, offset, vectors, node * dimension, dimension);
+        ids[node] = id;
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], NO_LINKS);
+        nodes.put(id, node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int queryOffset = node * dimension;
+        List<Candidate> entries = List.of(greedySearch(vectors, queryOffset, maxLevel, level));
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(vectors, queryOffset, entries, efConstruction, l, false);
+            int[] neighbors = selectNeighbors(found, m);
+            links[node][l] = neighbors;
+            for (int neighbor : neighbors) {
+                connect(neighbor, node, l);
+            }
+            entries = found;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * 从入口点开始在高层逐层贪心下降，返回toLevel层的入口
+     */
+    private Candidate greedySearch(float[] query, int offset, int fromLevel, int toLevel) {
+        int current = entryPoint;
+        float best = similarity(query, offset, current);
+        for (int level = fromLevel; level > toLevel; level--) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int neighbor : links[current][level]) {
+                    float similarity = similarity(query, offset, neighbor);
+                    if (similarity > best) {
+                        best = similarity;
+                        current = neighbor;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return new Candidate(current, best);
+    }
+
+    /**
+     * 在单层上做候选集大小为ef的最佳优先搜索
+     * @param liveOnly 为true时墓碑节点只用于遍历，不进入结果
+     * @return 按相似度从高到低排列的结果
+     */
+    private List<Candidate> searchLayer(float[] query, int offset, List<Candidate> entries, int ef, int level, boolean liveOnly) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        for (Candidate entry : entries) {
+            visited.set(entry.node);
+            candidates.add(entry);
+            if (!liveOnly || !deleted.get(entry.node)) {
+                results.add(entry);
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity < results.peek().similarity) {
+                break;
+            }
+            for (int neighbor : links[current.node][level]) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = similarity(query, offset, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    if (!liveOnly || !deleted.get(neighbor)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * 启发式邻居选择：候选与已选邻居的相似度高于与目标的相似度时跳过，避免邻居都挤在同一方向
+     */
+    private int[] selectNeighbors(List<Candidate> sortedCandidates, int max) {
+        int[] selected = new int[Math.min(max, sortedCandidates.size())];
+        int size = 0;
+        for (Candidate candidate : sortedCandidates) {
+            if (size == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < size; i++) {
+                if (similarity(vectors, selected[i] * dimension, candidate.node) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[size++] = candidate.node;
+            }
+        }
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    /**
+     * 为已有节点添加反向连接，超过上限时重新挑选邻居
+     */
+    private void connect(int node, int neighbor, int level) {
+        int[] current = links[node][level];
+        int max = level == 0 ? maxM0 : m;
+        if (current.length < max) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = neighbor;
+            links[node][level] = grown;
+            return;
+        }
+        int offset = node * dimension;
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        candidates.add(new Candidate(neighbor, similarity(vectors, offset, neighbor)));
+        for (int existing : current) {
+            candidates.add(new Candidate(existing, similarity(vectors, offset, existing)));
+        }
+        candidates.sort(BEST_FIRST);
+        links[node][level] = selectNeighbors(candidates, max);
+    }
+
+    private float similarity(float[] query, int offset, int node) {
+        int base = node * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[offset + i] * vectors[base + i];
+        }
+        return sum;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, ids.length * 2);
+        if ((long) grown * dimension > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("HNSW index cannot hold " + capacity + " vectors of dimension " + dimension);
+        }
+        vectors = Arrays.copyOf(vectors, grown * dimension);
+        ids = Arrays.copyOf(ids, grown);
+        links = Arrays.copyOf(links, grown);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length + " does not match index dimension " + dimension);
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    private record Candidate(int node, float similarity) {
+    }
+}
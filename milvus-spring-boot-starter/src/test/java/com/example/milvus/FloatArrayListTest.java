@@ -0,0 +1,21 @@
+package com.example.milvus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FloatArrayListTest {
+
+    @Test
+    void of_ShouldExposeArrayWithoutCopying() {
+        float[] vector = {1f, 2f, 3f};
+
+        List<Float> view = FloatArrayList.of(vector);
+        vector[1] = 5f;
+
+        assertEquals(List.of(1f, 5f, 3f), view);
+        assertThrows(UnsupportedOperationException.class, () -> view.set(0, 9f));
+    }
+}
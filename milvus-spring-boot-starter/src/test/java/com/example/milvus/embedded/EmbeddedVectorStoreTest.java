@@ -0,0 +1,187 @@
+package com.example.milvus.embedded;
+
+import com.example.milvus.MilvusProperties;
+import com.example.milvus.VectorHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * milvus.mode=embedded时使用的进程内向量存储
+ * 召回率以暴力计算的精确余弦TopK为基准
+ */
+class EmbeddedVectorStoreTest {
+
+    private static final String COLLECTION = "knowledge_base";
+    private static final int DIM = 384;
+    private static final int TOP_K = 10;
+
+    @TempDir
+    Path dataDir;
+
+    private MilvusProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MilvusProperties();
+        properties.setMode(MilvusProperties.Mode.EMBEDDED);
+        properties.getEmbedded().setDataDir(dataDir.toString());
+        properties.getEmbedded().setFlushIntervalSeconds(0);
+    }
+
+    @Test
+    void search_ShouldMatchExactCosineTopKWithHighRecall() {
+        Random random = new Random(42);
+        List<float[]> corpus = clusteredVectors(random, 5_000);
+        List<float[]> queries = clusteredVectors(random, 200);
+        List<Long> ids = ids(corpus.size());
+
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(properties)) {
+            store.createCollectionIfAbsent(COLLECTION, DIM);
+            store.insert(COLLECTION, ids, corpus);
+
+            int matched = 0;
+            for (float[] query : queries) {
+                List<VectorHit> hits = store.search(COLLECTION, query, TOP_K);
+                Set<Long> expected = exactTopK(corpus, query, TOP_K);
+
+                assertEquals(TOP_K, hits.size());
+                matched += (int) hits.stream().filter(hit -> expected.contains(hit.id())).count();
+            }
+            double recall = matched / (double) (queries.size() * TOP_K);
+
+            assertTrue(recall >= 0.9, "recall@10 should be at least 0.9 but was " + recall);
+        }
+    }
+
+    @Test
+    void search_ShouldReturnCosineScoresInDescendingOrder() {
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(properties)) {
+            store.createCollectionIfAbsent(COLLECTION, 3);
+            store.insert(COLLECTION, List.of(1L, 2L, 3L),
+                    List.of(new float[]{1, 0, 0}, new float[]{10, 10, 0}, new float[]{0, 0, 5}));
+
+            List<VectorHit> hits = store.search(COLLECTION, new float[]{2, 0, 0}, 3);
+
+            assertEquals(List.of(1L, 2L, 3L), hits.stream().map(VectorHit::id).toList());
+            assertEquals(1f, hits.get(0).score(), 1e-6);
+            assertEquals((float) Math.sqrt(0.5), hits.get(1).score(), 1e-6);
+            assertEquals(0f, hits.get(2).score(), 1e-6);
+        }
+    }
+
+    @Test
+    void delete_ShouldHideVectorAndUpsertShouldReplaceExistingId() {
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(properties)) {
+            store.createCollectionIfAbsent(COLLECTION, 2);
+            store.insert(COLLECTION, List.of(1L, 2L), List.of(new float[]{1, 0}, new float[]{0, 1}));
+
+            store.delete(COLLECTION, List.of(1L));
+            assertEquals(List.of(2L), store.search(COLLECTION, new float[]{1, 0}, 2).stream().map(VectorHit::id).toList());
+
+            store.upsert(COLLECTION, List.of(2L), List.of(new float[]{1, 0}));
+            List<VectorHit> hits = store.search(COLLECTION, new float[]{1, 0}, 2);
+            assertEquals(1, hits.size());
+            assertEquals(1f, hits.get(0).score(), 1e-6);
+
+            store.compact(COLLECTION);
+            assertEquals(hits, store.search(COLLECTION, new float[]{1, 0}, 2));
+        }
+    }
+
+    @Test
+    void close_ShouldPersistCollectionAndReloadItFromMappedFile() {
+        Random random = new Random(7);
+        List<float[]> corpus = clusteredVectors(random, 500);
+        float[] query = corpus.get(123);
+        List<VectorHit> before;
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(properties)) {
+            store.createCollectionIfAbsent(COLLECTION, DIM);
+            store.insert(COLLECTION, ids(corpus.size()), corpus);
+            store.delete(COLLECTION, List.of(0L));
+            before = store.search(COLLECTION, query, TOP_K);
+            assertNull(store.flushedAt(COLLECTION));
+        }
+        assertTrue(Files.exists(dataDir.resolve(COLLECTION + ".hnsw")));
+
+        try (EmbeddedVectorStore reopened = new EmbeddedVectorStore(properties)) {
+            reopened.createCollectionIfAbsent(COLLECTION, DIM);
+            List<VectorHit> after = reopened.search(COLLECTION, query, TOP_K);
+
+            assertEquals(before, after);
+            assertEquals(123L, after.get(0).id());
+            assertTrue(after.stream().noneMatch(hit -> hit.id() == 0L));
+            assertEquals(Set.copyOf(LongStream.range(1, corpus.size()).boxed().toList()), reopened.ids(COLLECTION));
+            assertNotNull(reopened.flushedAt(COLLECTION));
+        }
+        try (EmbeddedVectorStore mismatched = new EmbeddedVectorStore(properties)) {
+            assertThrows(IllegalStateException.class, () -> mismatched.createCollectionIfAbsent(COLLECTION, DIM + 1));
+        }
+    }
+
+    /**
+     * 模拟文本向量的分布：若干主题中心加噪声，比均匀随机向量更接近真实语料
+     */
+    private static List<float[]> clusteredVectors(Random random, int count) {
+        Random centers = new Random(1);
+        float[][] topics = new float[50][DIM];
+        for (float[] topic : topics) {
+            for (int d = 0; d < DIM; d++) {
+                topic[d] = (float) centers.nextGaussian();
+            }
+        }
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] topic = topics[random.nextInt(topics.length)];
+            float[] vector = new float[DIM];
+            for (int d = 0; d < DIM; d++) {
+                vector[d] = topic[d] + (float) random.nextGaussian() * 0.8f;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static Set<Long> exactTopK(List<float[]> corpus, float[] query, int k) {
+        double queryNorm = norm(query);
+        double[] scores = new double[corpus.size()];
+        for (int i = 0; i < corpus.size(); i++) {
+            float[] vector = corpus.get(i);
+            double dot = 0;
+            for (int d = 0; d < DIM; d++) {
+                dot += query[d] * vector[d];
+            }
+            scores[i] = dot / (queryNorm * norm(vector));
+        }
+        Set<Long> top = new HashSet<>();
+        IntStream.range(0, corpus.size()).boxed()
+                .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                .limit(k)
+                .forEach(i -> top.add((long) i));
+        return top;
+    }
+
+    private static double norm(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static List<Long> ids(int count) {
+        return LongStream.range(0, count).boxed().toList();
+    }
+}
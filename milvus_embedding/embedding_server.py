@@ -1,4 +1,4 @@
-from fastapi import FastAPI
+from fastapi import FastAPI, Request, Response
 from pydantic import BaseModel
 from transformers import AutoTokenizer, AutoModel
 import torch
@@ -18,11 +18,41 @@ model = AutoModel.from_pretrained(MODEL_NAME)
 class EmbeddingRequest(BaseModel):
     text: str
 
+class EmbeddingBatchRequest(BaseModel):
+    texts: list[str]
+
+BINARY_MEDIA_TYPE = "application/octet-stream"
+
+def wants_binary(request: Request) -> bool:
+    return BINARY_MEDIA_TYPE in request.headers.get("accept", "")
+
+def binary_response(embeddings: torch.Tensor) -> Response:
+    # 小端float32，按行依次排列，每行一个向量；维度通过响应头告知调用方
+    payload = embeddings.to(torch.float32).contiguous().numpy().astype("<f4").tobytes()
+    return Response(content=payload, media_type=BINARY_MEDIA_TYPE,
+                    headers={"X-Embedding-Dim": str(embeddings.shape[-1])})
+
 @app.post("/embed")
-async def embed(req: EmbeddingRequest):
+async def embed(req: EmbeddingRequest, request: Request):
     inputs = tokenizer(req.text, return_tensors="pt", truncation=True, max_length=512)
     with torch.no_grad():
         model_output = model(**inputs)
     # 取 [CLS] token 的输出
-    embeddings = model_output.last_hidden_state[:, 0, :].squeeze().tolist()
+    cls = model_output.last_hidden_state[:, 0, :]
+    # 请求方声明接受二进制时直接返回float32字节，避免JSON数字的编码和解析
+    if wants_binary(request):
+        return binary_response(cls)
+    embeddings = cls.squeeze().tolist()
     return {"embedding": embeddings}
+
+@app.post("/embed_batch")
+async def embed_batch(req: EmbeddingBatchRequest, request: Request):
+    # 一次前向计算处理整批文本，padding补齐到批内最长文本
+    inputs = tokenizer(req.texts, return_tensors="pt", padding=True, truncation=True, max_length=512)
+    with torch.no_grad():
+        model_output = model(**inputs)
+    # 每条文本取各自 [CLS] token 的输出，返回顺序与请求一致
+    cls = model_output.last_hidden_state[:, 0, :]
+    if wants_binary(request):
+        return binary_response(cls)
+    return {"embeddings": cls.tolist()}